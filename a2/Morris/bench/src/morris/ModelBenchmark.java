@@ -0,0 +1,166 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmarks of the game model:  playing through GameModel.play in each phase of the game, the rule queries behind
+// it, and saving and loading a game
+// The play benchmarks replay part of a recorded game on a fresh model (from GameModel(Position)), as a play cannot be
+// taken back.  checkForMill, getTotalMoves and setValidDeletions are now one line each in GameModel, passing to
+// Position.isInMill, Position.countMoves and Position.getCaptureTargets, so those are measured directly.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+
+	// seed of the first game tried when recording a game
+	private static final long SEED = 1;
+
+	// number of moving-phase plies replayed
+	private static final int MOVING_PLIES = 20;
+
+	// the recorded game:  its moves, and how many of them are in the placing phase
+	private int[] game;
+	private int placingPlies;
+
+	// positions the play benchmarks start from
+	private Position opening;
+	private Position movingStart;
+	private Position deletionStart;
+	private int deletion;
+
+	// a moving-phase game to query and save
+	private GameModel midGame;
+	private Position midPosition;
+
+	private File saveFile;
+
+	@Setup
+	public void setUp() throws IOException {
+
+		// record random games until one has a long enough moving phase and a capture in it
+		for (long seed = SEED; game == null; seed++)
+			record(new Random(seed));
+
+		movingStart = new Position(opening);
+		for (int i = 0; i < placingPlies; i++)
+			movingStart.makeMove(game[i]);
+
+		midGame = new GameModel(movingStart);
+		midPosition = midGame.getPosition();
+
+		saveFile = File.createTempFile("morris", ".sav");
+		saveFile.deleteOnExit();
+	}
+
+	// plays a random game from the opening:  keeps it if it has a capture after MOVING_PLIES moving-phase plies
+	private void record(Random random) {
+		Position position = new Position(Position.BLUE);
+		Position start = new Position(position);
+		int[] moves = new int[Move.MAX_MOVES];
+		int[] played = new int[1000];
+		int count = 0;
+		int placing = -1;
+
+		while (position.getWinner() == Position.NONE && count < played.length) {
+			if (placing < 0 && !position.isPlacingPhase())
+				placing = count;
+
+			// the first pending capture past the replayed moving-phase plies
+			if (placing >= 0 && count >= placing + MOVING_PLIES && position.isDeletionRequired()) {
+				game = new int[count];
+				System.arraycopy(played, 0, game, 0, count);
+				placingPlies = placing;
+				opening = start;
+				deletionStart = new Position(position);
+				position.generateMoves(moves);
+				deletion = moves[0];
+				return;
+			}
+
+			int n = position.generateMoves(moves);
+			if (n == 0)
+				return;
+			played[count] = moves[random.nextInt(n)];
+			position.makeMove(played[count++]);
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		saveFile.delete();
+	}
+
+	// places every piece (with any captures along the way), clicking the tray and board through GameModel.play
+	@Benchmark
+	public GameModel playPlacingPhase() {
+		GameModel model = new GameModel(opening);
+		for (int i = 0; i < placingPlies; i++)
+			model.playMove(game[i]);
+		return model;
+	}
+
+	// selects and moves pieces (with any captures along the way) through GameModel.play
+	@Benchmark
+	public GameModel playMovingPhase() {
+		GameModel model = new GameModel(movingStart);
+		for (int i = placingPlies; i < placingPlies + MOVING_PLIES; i++)
+			model.playMove(game[i]);
+		return model;
+	}
+
+	// makes a pending capture through GameModel.play
+	@Benchmark
+	public GameModel playDeletion() {
+		GameModel model = new GameModel(deletionStart);
+		model.play(Topology.xOf(Move.to(deletion)), Topology.yOf(Move.to(deletion)));
+		return model;
+	}
+
+	// asks for every point whether its piece is in a mill
+	@Benchmark
+	public int checkForMill() {
+		int mills = 0;
+		for (int p = 0; p < Topology.POINTS; p++)
+			if (midPosition.isInMill(p))
+				mills++;
+		return mills;
+	}
+
+	// counts the moves of the side to move
+	@Benchmark
+	public int getTotalMoves() {
+		return midPosition.countMoves(midPosition.getTurn());
+	}
+
+	// finds the pieces that may be captured
+	@Benchmark
+	public int setValidDeletions() {
+		return midPosition.getCaptureTargets();
+	}
+
+	// saves the moving-phase game and loads it back
+	@Benchmark
+	public GameModel saveLoadRoundTrip() {
+		midGame.save(saveFile);
+		return new GameModel(saveFile);
+	}
+
+}
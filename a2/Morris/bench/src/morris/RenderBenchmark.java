@@ -0,0 +1,75 @@
+package morris;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Benchmark of drawing the game:  GamePane.paintComponent into an offscreen image, for a game in the moving phase
+// with a piece selected (so legal moves are drawn too)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class RenderBenchmark {
+
+	private GamePane view;
+	private BufferedImage image;
+	private Graphics2D graphics;
+
+	@Setup
+	public void setUp() {
+
+		// play random games until one reaches the moving phase
+		Position position;
+		Random random = new Random(1);
+		int[] moves = new int[Move.MAX_MOVES];
+		do {
+			position = new Position(Position.BLUE);
+			while (position.getWinner() == Position.NONE && (position.isPlacingPhase() || position.isDeletionRequired())) {
+				int count = position.generateMoves(moves);
+				position.makeMove(moves[random.nextInt(count)]);
+			}
+		} while (position.getWinner() != Position.NONE);
+
+		// select the first piece that can move
+		GameModel model = new GameModel(position);
+		position.generateMoves(moves);
+		int from = Move.from(moves[0]);
+		model.play(Topology.xOf(from), Topology.yOf(from));
+
+		view = new GamePane(model);
+		Dimension size = view.getPreferredSize();
+		view.setSize(size);
+		image = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+		graphics = image.createGraphics();
+	}
+
+	@TearDown
+	public void tearDown() {
+		graphics.dispose();
+	}
+
+	// draws the whole game once
+	@Benchmark
+	public BufferedImage paint() {
+		view.paintComponent(graphics);
+		return image;
+	}
+
+}
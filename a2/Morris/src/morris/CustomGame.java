@@ -54,14 +54,13 @@ public class CustomGame extends Environment {
 
 	private void handleCustomize(Point mouseClick){
 		
-		for(int i = 0; i < gameModel.getPieceCount() * 2; i++)
-			if(view.clickInTray(mouseClick, i))
-				gameModel.cyclePieces(i);
+		int slot = view.traySlotAt(mouseClick);
+		if(slot != -1)
+			gameModel.cyclePieces(slot);
 		
-		for (int i = 0; i < gameModel.getBoardSize(); i++)
-			for (int j = 0; j < gameModel.getBoardSize(); j++)
-				if (view.clickInBoard(mouseClick, i, j))
-					gameModel.cyclePieces(i, j);
+		int point = view.boardPointAt(mouseClick);
+		if (point != -1)
+			gameModel.cyclePieces(Topology.xOf(point), Topology.yOf(point));
 		
 	}
 	
@@ -70,7 +69,7 @@ public class CustomGame extends Environment {
 
 		Point mouseClick = SwingUtilities.convertPoint(this, e.getPoint(), view);
 		
-		next = handleInGameMenu(mouseClick);
+		setNext(handleInGameMenu(mouseClick));
 
 		handleCustomize(mouseClick);
 		
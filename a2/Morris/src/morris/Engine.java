@@ -0,0 +1,654 @@
+package morris;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Computer opponent:  a negamax search with alpha-beta pruning and iterative deepening
+// The search runs on its own copy of the position using makeMove/unmakeMove, so it follows the same rules as
+// GameModel and can be run on any thread
+// With more than one thread the search is a "lazy SMP" search:  helper engines search their own copies of the
+// position at the same time and share results only through the transposition table
+// With a tablebase, moving-phase positions are not searched at all:  their results are looked up (a tablebase
+// without distances only scores positions, as it cannot tell which winning move makes progress)
+// Moves are ordered before they are searched:  the hash move, then moves that close a mill (and, when capturing,
+// pieces that are one of an open two), moves that block an opponent's mill, two killer moves per ply, and the rest
+// by a history of the cutoffs each from/to pair has caused
+// At the horizon a quiescence search plays out pending captures and mill closures before evaluating, so that a
+// position is never scored in the middle of an exchange
+public class Engine {
+
+	// score of a won position (reduced by the ply it is reached at, so quicker wins score higher)
+	public static final int WIN = 30000;
+
+	// bound larger than any score
+	private static final int INFINITY = 32000;
+
+	// deepest ply the search will reach
+	private static final int MAX_PLY = 64;
+
+	// most plies the quiescence search adds beyond the horizon (a mill closure and its capture are two plies)
+	private static final int QUIESCENCE_DEPTH = 6;
+
+	// margin over the value of a piece within which a mill closure is still tried by the quiescence search
+	private static final int DELTA_MARGIN = 50;
+
+	// scores at least this large are forced wins/losses
+	private static final int WIN_BOUND = WIN - MAX_PLY;
+
+	// score of a position the tablebase shows as won (reduced by the turns to the win and the ply it is reached
+	// at), below any searched win
+	private static final int TABLEBASE_WIN = WIN_BOUND - 1;
+
+	// longest distance a tablebase holds (distances are one byte)
+	private static final int MAX_DISTANCE = 255;
+
+	// scores at least this large are wins found by the search or the tablebase, relative to the ply they are
+	// reached at
+	private static final int TABLEBASE_BOUND = TABLEBASE_WIN - MAX_DISTANCE - MAX_PLY;
+
+	// how often (in nodes) the clock is checked
+	private static final int CLOCK_CHECK = 1024;
+
+	// default size of the transposition table, in megabytes
+	public static final int DEFAULT_HASH_SIZE = 16;
+
+	// transposition table (may be shared with other engines)
+	private final TranspositionTable table;
+
+	// solved moving-phase positions (null if there is none)
+	private Tablebase tablebase;
+
+	// moves to play without searching in the placing phase (null if there is none)
+	private OpeningBook book;
+
+	// weights of the static evaluation
+	private Weights weights = new Weights();
+
+	// helper engines (one per extra thread) and the threads they run on
+	private Engine[] helpers = new Engine[0];
+	private ExecutorService pool;
+
+	// move lists for each ply and the ordering scores of their moves, allocated once so the search itself does
+	// not allocate
+	private final int[][] moveStack = new int[MAX_PLY + 1][Move.MAX_MOVES];
+	private final int[][] scoreStack = new int[MAX_PLY + 1][Move.MAX_MOVES];
+
+	// ordering scores of the kinds of move tried before the rest (which are scored by history, below KILLER)
+	private static final int HASH_MOVE = 1 << 30;
+	private static final int CLOSES_MILL = 1 << 29;
+	private static final int BLOCKS_MILL = 1 << 28;
+	private static final int KILLER = 1 << 27;
+
+	// two quiet moves per ply that last caused a cutoff there
+	private final int[][] killers = new int[MAX_PLY + 1][2];
+
+	// cutoffs caused by each quiet move, weighted by depth, indexed by from and to point (a place counts as moved
+	// from the point it is placed on)
+	private final int[][] history = new int[Topology.POINTS][Topology.POINTS];
+
+	// the position being searched
+	private Position position;
+
+	// time at which the current search must stop
+	private long deadline;
+
+	// set to stop the current search (can be set from another thread)
+	private volatile boolean stopped;
+
+	// set while a search is running, when the helpers must not be replaced
+	private volatile boolean searching;
+
+	// best move found at the root in the current iteration
+	private int rootBest;
+
+	// results of the last search
+	private int bestMove;
+	private int bestScore;
+	private int completedDepth;
+	private long nodes;
+	private long elapsed;
+
+	// ordering statistics of the last search:  nodes where a move caused a cutoff, and where the first move did
+	private long cutoffs;
+	private long firstMoveCutoffs;
+
+	// creates an engine with its own transposition table
+	public Engine() {
+		this(new TranspositionTable(DEFAULT_HASH_SIZE));
+	}
+
+	// creates an engine that uses the given transposition table
+	public Engine(TranspositionTable table) {
+		this.table = table;
+	}
+
+	// returns the transposition table used by this engine
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	// sets the tablebase used to play and score moving-phase positions (null for none)
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+		for (Engine helper : helpers)
+			helper.tablebase = tablebase;
+	}
+
+	// returns the tablebase used by this engine (null if there is none)
+	public Tablebase getTablebase() {
+		return tablebase;
+	}
+
+	// sets the opening book:  a position in book is played from it without searching (null for none)
+	public void setOpeningBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	// returns the opening book used by this engine (null if there is none)
+	public OpeningBook getOpeningBook() {
+		return book;
+	}
+
+	// sets the weights of the static evaluation
+	public void setWeights(Weights weights) {
+		this.weights = weights;
+		for (Engine helper : helpers)
+			helper.weights = weights;
+	}
+
+	// returns the weights of the static evaluation
+	public Weights getWeights() {
+		return weights;
+	}
+
+	// sets the number of threads used by each search (helpers share this engine's transposition table)
+	// (not while a search is running:  its helpers would be left searching)
+	public void setThreads(int threads) {
+		if (searching)
+			throw new IllegalStateException("cannot change the number of threads during a search");
+		if (pool != null)
+			pool.shutdown();
+
+		helpers = new Engine[Math.max(0, threads - 1)];
+		for (int i = 0; i < helpers.length; i++) {
+			helpers[i] = new Engine(table);
+			helpers[i].tablebase = tablebase;
+			helpers[i].weights = weights;
+		}
+
+		pool = helpers.length == 0 ? null : Executors.newFixedThreadPool(helpers.length, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "search helper");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// returns the number of threads used by each search
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+
+	// searches the position for up to timeMillis milliseconds and returns the best move found (Move.NONE if there are no moves)
+	// the position is restored before returning
+	public int search(Position position, long timeMillis) {
+		return search(position, timeMillis, MAX_PLY);
+	}
+
+	// searches the position to a fixed depth (without a time limit) and returns the best move found
+	public int searchDepth(Position position, int depth) {
+		return search(position, Long.MAX_VALUE, Math.min(depth, MAX_PLY));
+	}
+
+	// searches the position until maxDepth is completed or timeMillis milliseconds have passed
+	private int search(Position position, long timeMillis, int maxDepth) {
+		searching = true;
+		try {
+			return searchWithHelpers(position, timeMillis, maxDepth);
+		} finally {
+			searching = false;
+		}
+	}
+
+	// the search itself:  the helpers and their threads are read once, so that the ones started are the ones
+	// stopped and counted
+	private int searchWithHelpers(Position position, long timeMillis, int maxDepth) {
+
+		Engine[] helpers = this.helpers;
+		ExecutorService pool = this.pool;
+
+		long start = System.currentTimeMillis();
+		prepare(position, timeMillis >= Long.MAX_VALUE - start ? Long.MAX_VALUE : start + timeMillis);
+		table.newSearch();
+
+		int[] moves = moveStack[0];
+		int count = position.generateMoves(moves);
+
+		// with a single move there is nothing to think about, a position in book has its move, and a position in
+		// the tablebase is already solved
+		boolean solved = count <= 1;
+		int bookMove = count > 1 && book != null ? book.probe(position) : Move.NONE;
+		if (count == 1)
+			bestMove = moves[0];
+		else if (bookMove != Move.NONE) {
+			bestMove = bookMove;
+			solved = true;
+		} else if (tablebase != null && tablebase.hasDistances() && Tablebase.covers(position)) {
+			bestMove = tablebase.bestMove(position);
+			bestScore = tablebaseScore(tablebase.probe(position), 0);
+			solved = true;
+		}
+
+		// start the helpers on their own copies of the position
+		Future<?>[] running = new Future<?>[helpers.length];
+		for (int i = 0; !solved && i < helpers.length; i++) {
+			final Engine helper = helpers[i];
+			final int id = i + 1;
+			final int depthLimit = maxDepth;
+			helper.prepare(new Position(position), deadline);
+			running[i] = pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					helper.iterate(1 + id % 2, depthLimit);
+				}
+			});
+		}
+
+		iterate(1, solved ? 0 : maxDepth);
+
+		// stop the helpers once the main search is done, and count their nodes
+		for (int i = 0; i < helpers.length; i++)
+			helpers[i].stop();
+		for (int i = 0; i < helpers.length; i++) {
+			if (running[i] == null)
+				continue;
+			try {
+				running[i].get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			nodes += helpers[i].nodes;
+			cutoffs += helpers[i].cutoffs;
+			firstMoveCutoffs += helpers[i].firstMoveCutoffs;
+		}
+
+		// out of time before the first iteration finished:  take whatever the search had found
+		if (bestMove == Move.NONE && count > 0)
+			bestMove = rootBest != Move.NONE ? rootBest : moves[0];
+
+		elapsed = System.currentTimeMillis() - start;
+
+		return bestMove;
+	}
+
+	// resets the search state for a new search of position
+	private void prepare(Position position, long deadline) {
+		this.position = position;
+		this.deadline = deadline;
+		stopped = false;
+		nodes = 0;
+		rootBest = Move.NONE;
+		bestMove = Move.NONE;
+		bestScore = 0;
+		completedDepth = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+
+		// killers are only good for the position they were found from, and history is aged so that it follows the
+		// game
+		for (int[] plyKillers : killers)
+			plyKillers[0] = plyKillers[1] = Move.NONE;
+		for (int[] from : history)
+			for (int to = 0; to < Topology.POINTS; to++)
+				from[to] >>= 2;
+	}
+
+	// iterative deepening from startDepth to maxDepth, stopping early when out of time or the result is forced
+	// (helpers start at different depths so that threads are spread over different parts of the tree)
+	private void iterate(int startDepth, int maxDepth) {
+
+		for (int depth = startDepth; depth <= maxDepth; depth++) {
+
+			rootBest = Move.NONE;
+			int score = negamax(depth, 0, -INFINITY, INFINITY);
+
+			// an unfinished iteration is thrown away
+			if (stopped)
+				break;
+
+			bestMove = rootBest;
+			bestScore = score;
+			completedDepth = depth;
+
+			// stop once the result is forced, or there is no time for another iteration
+			if (Math.abs(score) >= WIN_BOUND || System.currentTimeMillis() >= deadline)
+				break;
+		}
+	}
+
+	// stops a running search as soon as possible
+	public void stop() {
+		stopped = true;
+	}
+
+	// negamax search with alpha-beta pruning:  returns the score of the position for the side to move
+	private int negamax(int depth, int ply, int alpha, int beta) {
+
+		if (depth <= 0)
+			return quiesce(0, ply, alpha, beta);
+
+		if (++nodes % CLOCK_CHECK == 0 && System.currentTimeMillis() >= deadline)
+			stopped = true;
+		if (stopped)
+			return 0;
+
+		int side = position.getTurn();
+
+		// the game is over (the winner may be either side, depending on how it ended)
+		if (position.getWinner() != Position.NONE)
+			return position.getWinner() == side ? WIN - ply : -(WIN - ply);
+
+		int[] moves = moveStack[ply];
+		int count = position.generateMoves(moves);
+
+		// a player who cannot move loses
+		if (count == 0)
+			return -(WIN - ply);
+
+		// a solved position needs no search (except at the root, whose move still has to be found:  with distances
+		// search() has already done so, and without them the moves are scored by probing the positions they lead to)
+		if (ply > 0 && tablebase != null && Tablebase.covers(position))
+			return tablebaseScore(tablebase.probe(position), ply);
+
+		if (ply >= MAX_PLY)
+			return evaluate();
+
+		// look the position up in the transposition table:  a deep enough result may end the search here
+		// (the table holds the canonical form of each position, so its moves are transformed to and from it)
+		int frame = position.getCanonicalTransform();
+		long key = position.getHash(frame);
+		long entry = table.probe(key);
+		int hashMove = Move.NONE;
+		if (entry != 0) {
+			hashMove = Symmetry.move(Symmetry.inverse(frame), TranspositionTable.move(entry));
+			if (ply > 0 && TranspositionTable.depth(entry) >= depth) {
+				int score = fromTable(TranspositionTable.score(entry), ply);
+				switch (TranspositionTable.bound(entry)) {
+				case TranspositionTable.EXACT:
+					return score;
+				case TranspositionTable.LOWER:
+					if (score >= beta)
+						return score;
+					break;
+				default:
+					if (score <= alpha)
+						return score;
+					break;
+				}
+			}
+		}
+
+		// try the best known move first:  the previous iteration's best at the root, otherwise the hash move
+		int first = ply == 0 && bestMove != Move.NONE ? bestMove : hashMove;
+		int[] scores = scoreStack[ply];
+		scoreMoves(moves, scores, count, first, ply);
+
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestHere = Move.NONE;
+
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(moves, scores, i, count);
+
+			position.makeMove(move);
+			// forming a mill keeps the turn (the capture comes next), so only negate when the turn passes
+			int score;
+			if (position.getTurn() == side)
+				score = negamax(depth - 1, ply + 1, alpha, beta);
+			else
+				score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+			position.unmakeMove(move);
+
+			if (stopped)
+				return 0;
+
+			if (score > best) {
+				best = score;
+				bestHere = move;
+				if (ply == 0)
+					rootBest = move;
+			}
+			if (score > alpha)
+				alpha = score;
+			if (alpha >= beta) {
+				cutoffs++;
+				if (i == 0)
+					firstMoveCutoffs++;
+				if (scores[i] < BLOCKS_MILL)
+					rememberCutoff(move, depth, ply);
+				break;
+			}
+		}
+
+		int bound = best >= beta ? TranspositionTable.LOWER : best > originalAlpha ? TranspositionTable.EXACT : TranspositionTable.UPPER;
+		table.store(key, Symmetry.move(frame, bestHere), toTable(best, ply), depth, bound);
+
+		return best;
+	}
+
+	// quiescence search beyond the horizon (qply plies so far):  a pending capture must be made, and otherwise the
+	// side to move may stand on the evaluation or try the moves that close a mill;  returns the score of the
+	// position for the side to move
+	private int quiesce(int qply, int ply, int alpha, int beta) {
+
+		if (++nodes % CLOCK_CHECK == 0 && System.currentTimeMillis() >= deadline)
+			stopped = true;
+		if (stopped)
+			return 0;
+
+		int side = position.getTurn();
+
+		if (position.getWinner() != Position.NONE)
+			return position.getWinner() == side ? WIN - ply : -(WIN - ply);
+
+		int[] moves = moveStack[ply];
+		int count = position.generateMoves(moves);
+		if (count == 0)
+			return -(WIN - ply);
+
+		if (ply > 0 && tablebase != null && Tablebase.covers(position))
+			return tablebaseScore(tablebase.probe(position), ply);
+
+		// out of depth:  a pending capture is counted as about a piece
+		boolean capturing = position.isDeletionRequired();
+		if (qply >= QUIESCENCE_DEPTH || ply >= MAX_PLY)
+			return evaluate() + (capturing ? weights.get(Weights.PIECES) : 0);
+
+		// a capture has to be made, but otherwise the side to move need not close a mill, so the evaluation is a
+		// lower bound on its score;  delta pruning:  if even winning a piece would leave it below alpha, no mill
+		// closure is worth trying
+		int best = -INFINITY;
+		if (!capturing) {
+			best = evaluate();
+			if (best >= beta || best + weights.get(Weights.PIECES) + DELTA_MARGIN <= alpha)
+				return best;
+			if (best > alpha)
+				alpha = best;
+		}
+
+		int[] scores = scoreStack[ply];
+		scoreMoves(moves, scores, count, Move.NONE, ply);
+
+		for (int i = 0; i < count; i++) {
+			int move = nextMove(moves, scores, i, count);
+			if (!capturing && !position.closesMill(move))
+				break;
+
+			position.makeMove(move);
+			int score;
+			if (position.getTurn() == side)
+				score = quiesce(qply + 1, ply + 1, alpha, beta);
+			else
+				score = -quiesce(qply + 1, ply + 1, -beta, -alpha);
+			position.unmakeMove(move);
+
+			if (stopped)
+				return 0;
+
+			if (score > best)
+				best = score;
+			if (score > alpha)
+				alpha = score;
+			if (alpha >= beta)
+				break;
+		}
+
+		return best;
+	}
+
+	// gives each move its ordering score
+	private void scoreMoves(int[] moves, int[] scores, int count, int first, int ply) {
+		int opponent = Position.opponent(position.getTurn());
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			int to = Move.to(move);
+			if (move == first)
+				scores[i] = HASH_MOVE;
+			else if (Move.type(move) == Move.CAPTURE)
+				scores[i] = position.isInOpenTwo(to) ? CLOSES_MILL : 0;
+			else if (position.closesMill(move))
+				scores[i] = CLOSES_MILL;
+			else if (position.getThreats(opponent, to) > 0)
+				scores[i] = BLOCKS_MILL;
+			else if (move == killers[ply][0])
+				scores[i] = KILLER + 1;
+			else if (move == killers[ply][1])
+				scores[i] = KILLER;
+			else
+				scores[i] = history[historyFrom(move)][to];
+		}
+	}
+
+	// swaps the best scored of moves i to count - 1 into place i and returns it (picking one move at a time saves
+	// sorting moves after a cutoff)
+	private static int nextMove(int[] moves, int[] scores, int i, int count) {
+		int best = i;
+		for (int j = i + 1; j < count; j++)
+			if (scores[j] > scores[best])
+				best = j;
+		int move = moves[best];
+		moves[best] = moves[i];
+		moves[i] = move;
+		int score = scores[best];
+		scores[best] = scores[i];
+		scores[i] = score;
+		return move;
+	}
+
+	// records that a quiet move caused a cutoff at ply:  it becomes the ply's first killer, and its history grows
+	private void rememberCutoff(int move, int depth, int ply) {
+		if (Move.type(move) == Move.CAPTURE)
+			return;
+		if (killers[ply][0] != move) {
+			killers[ply][1] = killers[ply][0];
+			killers[ply][0] = move;
+		}
+
+		int[] from = history[historyFrom(move)];
+		from[Move.to(move)] += depth * depth;
+		// keep history below the killers, halving the table when it grows too large
+		if (from[Move.to(move)] >= KILLER) {
+			for (int[] row : history)
+				for (int to = 0; to < Topology.POINTS; to++)
+					row[to] >>= 1;
+		}
+	}
+
+	// returns the history row of a move:  the point it moves from, or the point it places on
+	private static int historyFrom(int move) {
+		return Move.type(move) == Move.MOVE ? Move.from(move) : Move.to(move);
+	}
+
+	// converts a score to be stored in the table:  win scores (searched or from the tablebase) are made relative to
+	// this ply instead of the root
+	private static int toTable(int score, int ply) {
+		if (score >= TABLEBASE_BOUND)
+			return score + ply;
+		if (score <= -TABLEBASE_BOUND)
+			return score - ply;
+		return score;
+	}
+
+	// converts a score read from the table back to be relative to the root
+	private static int fromTable(int score, int ply) {
+		if (score >= TABLEBASE_BOUND)
+			return score - ply;
+		if (score <= -TABLEBASE_BOUND)
+			return score + ply;
+		return score;
+	}
+
+	// converts a tablebase probe at ply to a score for the side to move:  quicker wins and slower losses score
+	// higher, counting the plies to reach the position as searched wins do
+	private static int tablebaseScore(int probe, int ply) {
+		switch (Tablebase.result(probe)) {
+		case Tablebase.WIN:
+			return TABLEBASE_WIN - Tablebase.distance(probe) - ply;
+		case Tablebase.LOSS:
+			return -(TABLEBASE_WIN - Tablebase.distance(probe) - ply);
+		default:
+			return 0;
+		}
+	}
+
+	// static evaluation of the position for the side to move (see Weights)
+	private int evaluate() {
+		return weights.evaluate(position);
+	}
+
+	// returns the best move found by the last search
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	// returns the score of the last search for the side to move
+	public int getBestScore() {
+		return bestScore;
+	}
+
+	// returns the deepest iteration completed by the last search
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	// returns the number of positions visited by the last search (by all threads)
+	public long getNodes() {
+		return nodes;
+	}
+
+	// returns the time taken by the last search, in milliseconds
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	// returns the search speed of the last search in nodes per second
+	public long getNodesPerSecond() {
+		return nodes * 1000 / Math.max(1, elapsed);
+	}
+
+	// returns the share of cutoffs in the last search that the first move tried caused (a measure of move ordering)
+	public double getFirstMoveCutoffRate() {
+		return cutoffs == 0 ? 0 : (double) firstMoveCutoffs / cutoffs;
+	}
+
+	// returns a one line summary of the last search
+	public String getReport() {
+		return "move " + Move.toString(bestMove) + "  depth " + completedDepth + "  score " + bestScore + "  nodes " + nodes + "  time " + elapsed + " ms  nps " + getNodesPerSecond()
+				+ String.format("  first move cutoffs %.1f%%", 100 * getFirstMoveCutoffRate());
+	}
+
+}
@@ -12,7 +12,9 @@ public abstract class Environment extends JFrame implements MouseListener, Mouse
 
 	private static final long serialVersionUID = 1L;
 	
-	protected Environment next = null;
+	// the window to switch to, set once the game needs to leave this window
+	private Environment next = null;
+	private final Object nextLock = new Object();
 
 	// Set up defaults for the window
 	public Environment(){
@@ -27,26 +29,31 @@ public abstract class Environment extends JFrame implements MouseListener, Mouse
 		addMouseMotionListener(this);
 	}
 	
-	// Run loop redraws the window every 1/60 s
-	// When the game needs to switch to a different window
-	// the new window is returned by this method
+	// Run loop waits (without using the processor) until the game needs to switch to a different window,
+	// and returns the new window;  the window repaints itself when its contents change
 	public Environment run() {
 
-		while (true) {
-
-			try {
-				Thread.sleep(1000 / 60);
-			} catch (InterruptedException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+		synchronized (nextLock) {
+			while (next == null) {
+				try {
+					nextLock.wait();
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
 			}
-
-			if (next != null)
-				return next;
-			
-			repaint();
+			return next;
 		}
 
 	}
 
+	// switches to window next (does nothing if next is null)
+	protected void setNext(Environment next) {
+		if (next == null)
+			return;
+		synchronized (nextLock) {
+			this.next = next;
+			nextLock.notifyAll();
+		}
+	}
+
 }
@@ -3,9 +3,14 @@ package morris;
 import java.awt.FileDialog;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
 
-import javax.swing.SwingUtilities;;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 
 // Window for the actual game (this is the game controller)
 public class Game extends Environment {
@@ -16,37 +21,146 @@ public class Game extends Environment {
 	private final GamePane view;
 	private final GameModel gameModel;
 
+	// the side played by the computer (Position.NONE if two people are playing)
+	private final int computerSide;
+
+	// the computer opponent and the search currently running for it (null when not thinking)
+	private final Engine engine;
+	private SwingWorker<Integer, Void> thinking;
+
+	// journal of the game's moves, kept until the player leaves the game (null if it could not be created)
+	private MoveJournal journal;
+
+	// time the computer may spend on each move, in milliseconds
+	private final long thinkTime = 1000;
+
+	// the tablebase and opening book, opened by the first game against the computer (null if there is no such file),
+	// and the evaluation weights (the defaults if there is no weights file)
+	private static Tablebase tablebase;
+	private static OpeningBook book;
+	private static Weights weights = new Weights();
+	private static boolean filesOpened;
+
 	// default constructor starts a new game
 	public Game() {
-		super();
-		gameModel = new GameModel();
-		view = new GamePane(gameModel);
-		
-		add(view);
-		pack();
-		setLocationRelativeTo(null);
+		this(false);
+	}
+
+	// constructor starts a new game, with the computer playing red if vsComputer is true
+	public Game(boolean vsComputer) {
+		this(new GameModel(), vsComputer ? Position.RED : Position.NONE, null);
 	}
 
 	// constructor to create game from a saved file
 	public Game(File inFile) {
-		super();
-		gameModel = new GameModel(inFile);
-		view = new GamePane(gameModel);
-		
-		add(view);
-		pack();
-		setLocationRelativeTo(null);
+		this(new GameModel(inFile), Position.NONE, null);
 	}
 	
 	// constructor to create game from a custom created board
 	public Game(GameModel gameModel) {
+		this(gameModel, Position.NONE, null);
+	}
+
+	// constructor to play gameModel, with the computer playing computerSide, adding to journal (a new journal is
+	// started if it is null)
+	private Game(GameModel gameModel, int computerSide, MoveJournal journal) {
 		super();
 		this.gameModel = gameModel;
 		view = new GamePane(gameModel);
+		this.computerSide = computerSide;
+		engine = computerSide != Position.NONE ? new Engine() : null;
+		if (engine != null) {
+			engine.setThreads(Runtime.getRuntime().availableProcessors());
+			openFiles();
+			engine.setTablebase(tablebase);
+			engine.setOpeningBook(book);
+			engine.setWeights(weights);
+		}
+
+		try {
+			this.journal = journal != null ? journal : MoveJournal.create(computerSide, gameModel.getSaveData());
+			gameModel.setJournal(this.journal);
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+
+		// the journal is kept when the window is closed, so the game is recovered the next time
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				closeJournal(false);
+			}
+		});
 		
 		add(view);
 		pack();
 		setLocationRelativeTo(null);
+		
+		checkComputerTurn();
+	}
+
+	// returns a window for the newest game left in progress (by a crash, or by closing its window), recovered from
+	// its journal, or null if there is none;  every other journal (of a game that had ended, an older game left in
+	// progress, or that cannot be read) is deleted, so that they do not pile up
+	public static Game recover() {
+		Game game = null;
+		for (File file : MoveJournal.list()) {
+			if (game == null) {
+				try {
+					MoveJournal journal = MoveJournal.open(file);
+					try {
+						GameModel gameModel = new GameModel(journal.getStart());
+						gameModel.replay(journal.getRecords());
+						if (!gameModel.isWinner()) {
+							game = new Game(gameModel, journal.getComputerSide(), journal);
+							continue;
+						}
+					} finally {
+						if (game == null)
+							journal.close();
+					}
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			if (!file.delete())
+				System.err.println("cannot delete " + file);
+		}
+		return game;
+	}
+
+	// closes the journal, deleting it if the game is over or abandoned
+	private void closeJournal(boolean delete) {
+		if (journal == null)
+			return;
+		gameModel.setJournal(null);
+		try {
+			if (delete)
+				journal.delete();
+			else
+				journal.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		journal = null;
+	}
+
+	// opens the tablebase and opening book files and reads the weights file if there are any (the first two are
+	// mapped, so this is quick and they are shared by all games)
+	private static void openFiles() {
+		if (filesOpened)
+			return;
+		filesOpened = true;
+		try {
+			if (new File(Tablebase.DEFAULT_FILE).exists())
+				tablebase = Tablebase.open(new File(Tablebase.DEFAULT_FILE));
+			if (new File(OpeningBook.DEFAULT_FILE).exists())
+				book = OpeningBook.open(new File(OpeningBook.DEFAULT_FILE));
+			if (new File(Weights.DEFAULT_FILE).exists())
+				weights = Weights.load(new File(Weights.DEFAULT_FILE));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 	}
 
 	// checks if a mouse click was on a menu item
@@ -55,6 +169,13 @@ public class Game extends Environment {
 		
 		// return to main menu
 		if (view.clickInMenu(mouseClick, 0)) {
+			// release the helper search threads (once the search has stopped, if the computer is thinking)
+			if (thinking != null)
+				engine.stop();
+			else if (engine != null)
+				engine.setThreads(1);
+			// the game is left, so it is not recovered
+			closeJournal(true);
 			dispose();
 			return new Menu();
 		}
@@ -67,6 +188,20 @@ public class Game extends Environment {
 				gameModel.save(fd.getFiles()[0]);
 		}
 
+		// undo the last move (against the computer, back to the player's last move)
+		if (view.clickInMenu(mouseClick, 2) && thinking == null) {
+			do
+				gameModel.undo();
+			while (isComputerTurn() && gameModel.canUndo());
+		}
+
+		// redo the last undone move (against the computer, up to the player's next move)
+		if (view.clickInMenu(mouseClick, 3) && thinking == null) {
+			do
+				gameModel.redo();
+			while (isComputerTurn() && gameModel.canRedo());
+		}
+
 		return null;
 	}
 	
@@ -74,15 +209,17 @@ public class Game extends Environment {
 	// if so, passes the tray/board location to the model for processing
 	private void handlePlay(Point mouseClick){
 		
-		for (int i = 0; i < gameModel.getPieceCount() * 2; i++) 
-			if (view.clickInTray(mouseClick, i))
-				gameModel.play(i);
+		// the player cannot play while the computer is thinking
+		if (thinking != null)
+			return;
 		
-		for (int i = 0; i < gameModel.getBoardSize(); i++) 
-			for (int j = 0; j < gameModel.getBoardSize(); j++) 
-				if (view.clickInBoard(mouseClick, i, j)) 
-					gameModel.play(i,j);
+		int slot = view.traySlotAt(mouseClick);
+		if (slot != -1)
+			gameModel.play(slot);
 		
+		int point = view.boardPointAt(mouseClick);
+		if (point != -1)
+			gameModel.play(Topology.xOf(point), Topology.yOf(point));
 		
 	}
 	
@@ -92,10 +229,57 @@ public class Game extends Environment {
 
 		Point mouseClick = SwingUtilities.convertPoint(this, e.getPoint(), view);
 		
-		next = handleInGameMenu(mouseClick);
+		setNext(handleInGameMenu(mouseClick));
 		
 		handlePlay(mouseClick);
 		
+		checkComputerTurn();
+		
+	}
+	
+	// returns true if it is the computer's turn to play
+	private boolean isComputerTurn() {
+		return computerSide != Position.NONE && !gameModel.isWinner() && gameModel.getPosition().getTurn() == computerSide;
+	}
+	
+	// if it is the computer's turn, search for its move off the event thread, then play it through the model
+	// (a capture after forming a mill is a second turn for the computer, so this repeats until the turn passes)
+	private void checkComputerTurn() {
+		
+		if (thinking != null || !isComputerTurn())
+			return;
+		
+		final Position position = new Position(gameModel.getPosition());
+		
+		thinking = new SwingWorker<Integer, Void>() {
+			
+			@Override
+			protected Integer doInBackground() {
+				return engine.search(position, thinkTime);
+			}
+			
+			@Override
+			protected void done() {
+				thinking = null;
+				try {
+					int move = get();
+					if (move != Move.NONE && isDisplayable()) {
+						gameModel.playMove(move);
+						checkComputerTurn();
+					}
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				} catch (ExecutionException e) {
+					e.printStackTrace();
+				} finally {
+					// the game was left while the computer was thinking:  release the helper search threads
+					if (!isDisplayable())
+						engine.setThreads(1);
+				}
+			}
+		};
+		
+		thinking.execute();
 	}
 
 	@Override
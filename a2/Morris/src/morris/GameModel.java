@@ -1,49 +1,34 @@
 package morris;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.PrintStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Random;
 import java.util.Scanner;
 
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
+
 // This class contains the model of the game
 // The board and trays are stored here, as well as the game logic
+// The board itself is kept as a bitboard Position, this class adapts it to the 7x7 board used by the view
 public class GameModel {
 
-	// the game board
-	// represented by PieceType:  	UNOCCUPIED = valid board position, contains no piece
-	//								BLUE = valid board position, contains blue piece
-	//								BLUE_SELECTED = valid board position, contains selected blue piece
-	//								RED = valid board position, contains red piece
-	//								RED_SELECTED = valid board position, contains selected red piece
-	//								PATH = not a board position, but links two boards positions
-	//								INVALID = not a board position i.e. unused index
-	private final PieceType[][] board;
-	
+	// the game board:  piece masks, pieces left to place, turn and the deletion required flag
+	private final Position position;
+
 	// the piece trays:  either BLUE, RED, or UNOCCUPIED
 	private final PieceType[] tray;
-	
-	// positions of legal moves (used when moving a piece or deleting an opponents piece)
-	// either LEGAL or ILLEGAL
-	private final PieceType[][] legalMoves;
-
-	// current piece counts of red and blue
-	private int blueCount;
-	private int redCount;
-	
-	// number of pieces left in try for red and blue
-	private int blueToPlace;
-	private int redToPlace;
-
-	// the current turn (BLUE if blue, RED if red)
-	private PieceType turn;
-
-	// true if a player has formed a mill and needs to delete an opponents piece
-	private boolean deletionRequired;
-	
-	// true if pieces are still to be placed from tray
-	private boolean placingPhase;
-	
+
+	// mask of board points that are legal moves (used when moving a piece or deleting an opponents piece)
+	private int legalMoves;
+
 	// true if the current player has selected a piece to place/move
 	private boolean pieceSelected;
 
@@ -51,35 +36,64 @@ public class GameModel {
 	private int selectedX;
 	private int selectedY;
 
-	// the winner of the game (UNOCCUPIED if none, BLUE if blue, RED if red)
-	private PieceType winner;
-
 	// the square dimension of the modeled board
-	private final int boardSize = 7;
-	
+	private final int boardSize = Topology.BOARD_SIZE;
+
 	// the number of pieces that each player starts with
-	private final int pieceCount = 6;
-	
+	private final int pieceCount = Position.PIECE_COUNT;
+
 	// the number of pieces that cause a player to lose the game
-	private final int losingPieceCount = 2;
-	
+	private final int losingPieceCount = Position.LOSING_PIECE_COUNT;
+
 	// true if creating a custom board
 	private boolean customizing;
 
-	// used in saving/loading:  if first line of file is equal to this it is assumed to be a valid save file
-	private final String fileVersion = "MORRISFILE1.3";
+	// used in saving/loading:  a save file starts with the magic number (it spells "MORRISSV") and the version
+	// layout (big-endian):  magic, version, blue and red piece masks, mask of occupied tray positions, turn,
+	// winner, flags, and the selected position;  the pieces left to place and the legal moves are derived from these
+	private static final long SAVE_MAGIC = 0x4d4f525249535356L;
+	private static final int SAVE_VERSION = 1;
+	private static final int SAVE_SIZE = 23;
+	private static final int SAVE_SELECTED = 1;
+	private static final int SAVE_DELETION_REQUIRED = 2;
+
+	// the first line of a save file from version 1.3, which wrote the old 7x7 board as text
+	private static final String TEXT_FILE_VERSION = "MORRISFILE1.3";
+
+	// largest file that is read as a save file
+	private static final int MAX_SAVE_FILE = 1 << 16;
+
+	// the moves made, for undo and redo:  the first historyTop have been made and the rest have been undone
+	// each is a record as kept in the journal (the move, and for a placement the tray position it came from)
+	private int[] history = new int[64];
+	private int historyTop;
+	private int historySize;
+
+	// record layout:  the move in the low bits and the tray position above it
+	private static final int RECORD_MOVE = 0xfff;
+	private static final int RECORD_TRAY_SHIFT = 12;
+
+	// journal every move is added to (null if there is none)
+	private MoveJournal journal;
+
+	// told whenever the board, trays, turn or winner change (so views only repaint when something changed)
+	private final List<ChangeListener> listeners = new ArrayList<ChangeListener>();
 
 	// default constructor:  not a custom board
 	public GameModel(){
 		this(false);
 	}
-	
+
 	// constructor takes boolean:  if true, a custom board being created
 	public GameModel(boolean customizing) {
+		this(customizing, System.currentTimeMillis());
+	}
+
+	// constructor takes boolean (true if a custom board is being created) and the seed that picks the first player,
+	// so a game can be started the same way again
+	public GameModel(boolean customizing, long seed) {
 
 		this.customizing = customizing;
-		
-		blueCount = redCount = customizing ? 0 : pieceCount;
 
 		tray = new PieceType[pieceCount * 2];
 
@@ -89,89 +103,227 @@ public class GameModel {
 			tray[pieceCount * 2 - 1 - i] = customizing ? PieceType.UNOCCUPIED : PieceType.RED;
 		}
 
-		// initialize all board positions to invalid
-		board = new PieceType[boardSize][boardSize];
-		for (int i = 0; i < board.length; i++) {
-			for (int j = 0; j < board[i].length; j++) {
-				board[i][j] = PieceType.INVALID;
-			}
-		}
-
-		// set valid spaces on outer square
-		board[0][0] = board[0][3] = board[0][6] = board[3][0] = board[3][6] = board[6][0] = board[6][3] = board[6][6] = PieceType.UNOCCUPIED;
-
-		// set valid spaces on inner square
-		board[2][2] = board[2][3] = board[2][4] = board[3][2] = board[3][4] = board[4][2] = board[4][3] = board[4][4] = PieceType.UNOCCUPIED;
+		// start with an empty board
+		position = new Position();
 
-		// set paths
-		board[0][1] = board[0][2] = board[0][4] = board[0][5] = board[1][0] = board[1][3] = board[1][6] = board[2][0] = board[2][6] = board[3][1] = board[3][5] = board[4][0] = board[4][6] = board[5][0] = board[5][3] = board[5][6] = board[6][1] = board[6][2] = board[6][4] = board[6][5] = PieceType.PATH;
-
-		// initialize legal moves to none (all ILLEGAL)
-		legalMoves = new PieceType[boardSize][boardSize];
+		// initialize legal moves to none
 		resetLegalMoves();
 
 		// pick a random player to go first
-		Random rand = new Random(System.currentTimeMillis());
+		Random rand = new Random(seed);
 		if (rand.nextBoolean())
-			turn = PieceType.BLUE;
+			position.setTurn(Position.BLUE);
 		else
-			turn = PieceType.RED;
+			position.setTurn(Position.RED);
 
-		
-		deletionRequired = false;
-		placingPhase = !customizing;
 		pieceSelected = false;
 
-		blueToPlace = redToPlace = customizing ? 0 : pieceCount;
-		winner = PieceType.UNOCCUPIED;
-		
+		position.setToPlace(Position.BLUE, customizing ? 0 : pieceCount);
+		position.setToPlace(Position.RED, customizing ? 0 : pieceCount);
+
 		selectedX = selectedY = 0;
-		
+
 	}
 
-	// constructor creates board and loads states from save file
+	// constructor starts a game from a copy of position:  the trays hold the pieces it has left to place
+	public GameModel(Position start) {
+
+		this(false);
+
+		position.copyFrom(start);
+
+		for (int i = 0; i < pieceCount; i++) {
+			tray[i] = i < position.getToPlace(Position.BLUE) ? PieceType.BLUE : PieceType.UNOCCUPIED;
+			tray[pieceCount * 2 - 1 - i] = i < position.getToPlace(Position.RED) ? PieceType.RED : PieceType.UNOCCUPIED;
+		}
+
+		// a pending deletion needs its valid deletions as the legal moves
+		if (position.isDeletionRequired())
+			setValidDeletions();
+	}
+
+	// constructor creates board and loads states from save file (a save file from version 1.3 is read too,
+	// and is saved in the current format from then on);  a file that is not a save file gives a new game
 	public GameModel(File inFile) {
 
 		this();
 
 		try {
-			Scanner input = new Scanner(inFile);
+			ByteBuffer buffer = read(inFile);
 
-			if (input.next().compareTo(fileVersion) != 0) {
-				input.close();
-				return;
-			}
+			if (buffer.remaining() >= SAVE_SIZE && buffer.getLong(0) == SAVE_MAGIC)
+				load(buffer);
+			else
+				loadText(new Scanner(StandardCharsets.US_ASCII.decode(buffer).toString()));
+
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
 
-			for (int i = 0; i < board.length; i++)
-				for (int j = 0; j < board.length; j++)
-					board[i][j] = PieceType.values()[input.nextInt()];
+	// constructor creates board and loads states from save data (see getSaveData)
+	public GameModel(ByteBuffer saved) throws IOException {
 
-			for (int i = 0; i < tray.length; i++) {
-				tray[i] = PieceType.values()[input.nextInt()];
-			}
+		this();
+
+		load(saved.duplicate());
+	}
+
+	// reads a whole (save sized) file through its channel
+	private static ByteBuffer read(File inFile) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(inFile, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(channel.size(), MAX_SAVE_FILE));
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+			buffer.flip();
+			return buffer;
+		} finally {
+			in.close();
+		}
+	}
+
+	// loads the state from a binary save file
+	private void load(ByteBuffer buffer) throws IOException {
+
+		buffer.getLong();
+		int version = buffer.getInt();
+		if (version != SAVE_VERSION)
+			throw new IOException("save file version " + version + ", expected " + SAVE_VERSION);
+
+		int blue = buffer.getShort() & 0xffff;
+		int red = buffer.getShort() & 0xffff;
+		int trays = buffer.getShort() & 0xffff;
+		int turn = buffer.get();
+		int winner = buffer.get();
+		int flags = buffer.get();
+		int x = buffer.get();
+		int y = buffer.get();
+
+		// the selection is a tray position (x only) or a board position, and a selected one must hold a piece of
+		// the side to move (checked before anything is loaded, so a bad file leaves the game as it was)
+		boolean selected = (flags & SAVE_SELECTED) != 0;
+		int blueTray = (1 << pieceCount) - 1;
+		int turnTray = turn == Position.BLUE ? blueTray : ~blueTray;
+		if (x < 0 || x >= tray.length || y < 0 || y >= boardSize)
+			throw new IOException("save file selection (" + x + "," + y + ") is off the board");
+		if (selected && trays != 0 && (turnTray & trays & 1 << x) == 0)
+			throw new IOException("save file selects tray position " + x + ", which has no piece to place");
+		if (selected && trays == 0 && (x >= boardSize || Topology.pointAt(x, y) == -1
+				|| ((turn == Position.BLUE ? blue : red) & 1 << Topology.pointAt(x, y)) == 0))
+			throw new IOException("save file selects (" + x + "," + y + "), which has no piece to move");
+		selectedX = x;
+		selectedY = y;
+
+		for (int p = 0; p < Topology.POINTS; p++) {
+			if ((blue & 1 << p) != 0)
+				position.set(p, Position.BLUE);
+			else if ((red & 1 << p) != 0)
+				position.set(p, Position.RED);
+		}
+
+		// the first half of the trays holds blue pieces and the second half red ones
+		for (int i = 0; i < tray.length; i++)
+			tray[i] = (trays & 1 << i) == 0 ? PieceType.UNOCCUPIED : i < pieceCount ? PieceType.BLUE : PieceType.RED;
+		position.setToPlace(Position.BLUE, Integer.bitCount(trays & blueTray));
+		position.setToPlace(Position.RED, Integer.bitCount(trays & ~blueTray));
 
-			for (int i = 0; i < legalMoves.length; i++)
-				for (int j = 0; j < legalMoves.length; j++)
-					legalMoves[i][j] = PieceType.values()[input.nextInt()];
-
-			blueCount = input.nextInt();
-			redCount = input.nextInt();
-			blueToPlace = input.nextInt();
-			redToPlace = input.nextInt();
-			turn = PieceType.values()[input.nextInt()];
-			placingPhase = input.nextBoolean();
-			pieceSelected = input.nextBoolean();
-			deletionRequired = input.nextBoolean();
-			selectedX = input.nextInt();
-			selectedY = input.nextInt();
-			winner = PieceType.values()[input.nextInt()];
+		position.setTurn(turn);
+		position.setWinner(winner);
+		position.setDeletionRequired((flags & SAVE_DELETION_REQUIRED) != 0);
+		pieceSelected = (flags & SAVE_SELECTED) != 0;
 
+		// the legal moves follow from the selection or the pending deletion
+		if (position.isDeletionRequired())
+			setValidDeletions();
+		else if (pieceSelected && position.isPlacingPhase()) {
+			tray[selectedX] = tray[selectedX].select();
+			setLegalMoves();
+		} else if (pieceSelected)
+			setLegalMoves(selectedX, selectedY);
+	}
+
+	// loads the state from a version 1.3 text save file (does nothing if it is not one)
+	private void loadText(Scanner input) {
+
+		if (!input.hasNext() || input.next().compareTo(TEXT_FILE_VERSION) != 0) {
 			input.close();
+			return;
+		}
 
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+		for (int i = 0; i < boardSize; i++) {
+			for (int j = 0; j < boardSize; j++) {
+				PieceType piece = PieceType.values()[input.nextInt()].deselect();
+				if (piece == PieceType.BLUE)
+					position.set(Topology.pointAt(i, j), Position.BLUE);
+				else if (piece == PieceType.RED)
+					position.set(Topology.pointAt(i, j), Position.RED);
+			}
 		}
+
+		for (int i = 0; i < tray.length; i++) {
+			tray[i] = PieceType.values()[input.nextInt()];
+		}
+
+		for (int i = 0; i < boardSize; i++)
+			for (int j = 0; j < boardSize; j++)
+				if (PieceType.values()[input.nextInt()] == PieceType.LEGAL)
+					legalMoves |= 1 << Topology.pointAt(i, j);
+
+		// piece counts are derived from the board and the pieces left to place
+		input.nextInt();
+		input.nextInt();
+		position.setToPlace(Position.BLUE, input.nextInt());
+		position.setToPlace(Position.RED, input.nextInt());
+		position.setTurn(toSide(PieceType.values()[input.nextInt()]));
+		// placing phase is derived from the pieces left to place
+		input.nextBoolean();
+		pieceSelected = input.nextBoolean();
+		position.setDeletionRequired(input.nextBoolean());
+		selectedX = input.nextInt();
+		selectedY = input.nextInt();
+		PieceType winner = PieceType.values()[input.nextInt()];
+		position.setWinner(winner == PieceType.UNOCCUPIED ? Position.NONE : toSide(winner));
+
+		input.close();
+	}
+
+	// converts a BLUE/RED piece type to a position side
+	private static int toSide(PieceType piece) {
+		return piece == PieceType.BLUE ? Position.BLUE : Position.RED;
+	}
+
+	// converts a position side to a BLUE/RED piece type
+	private static PieceType toPieceType(int side) {
+		return side == Position.BLUE ? PieceType.BLUE : PieceType.RED;
+	}
+
+	// adds a listener to be told of every change to the game
+	public void addChangeListener(ChangeListener listener) {
+		listeners.add(listener);
+	}
+
+	// removes a listener added by addChangeListener
+	public void removeChangeListener(ChangeListener listener) {
+		listeners.remove(listener);
+	}
+
+	// tells the listeners that the game has changed
+	private void fireChanged() {
+		ChangeEvent event = new ChangeEvent(this);
+		for (ChangeListener listener : listeners)
+			listener.stateChanged(event);
+	}
+
+	// returns the position that backs this model
+	public Position getPosition() {
+		return position;
+	}
+
+	// returns the 64-bit Zobrist hash of the current position (board, trays, turn and deletion flag)
+	public long getHash() {
+		return position.getHash();
 	}
 
 	// get piece count (i.e. number of pieces that each player starts with)
@@ -184,13 +336,14 @@ public class GameModel {
 		return pieceSelected;
 	}
 
-	// 
+	//
 	private Boolean isOwnerAt(Integer x) {
-		return tray[x] == turn || tray[x] == turn.select();
+		return tray[x].deselect() == toPieceType(position.getTurn());
 	}
 
 	private Boolean isOwnerAt(Integer x, Integer y) {
-		return board[x][y] == turn || board[x][y] == turn.select();
+		int p = Topology.pointAt(x, y);
+		return p != -1 && position.sideAt(p) == position.getTurn();
 	}
 
 	// select piece at tray[x]
@@ -200,54 +353,50 @@ public class GameModel {
 		selectedX = x;
 		pieceSelected = true;
 		setLegalMoves();
+		fireChanged();
 
 	}
 
 	// select piece at board[x][y]
 	private void selectPiece(Integer x, Integer y) {
 
-		board[x][y] = board[x][y].select();
 		selectedX = x;
 		selectedY = y;
 		pieceSelected = true;
 		setLegalMoves(x, y);
+		fireChanged();
 
 	}
 
 	// deselect the currently selected piece
 	private void deselectPiece() {
-		if(placingPhase)
+		if(position.isPlacingPhase())
 			tray[selectedX] = tray[selectedX].deselect();
-		else
-			board[selectedX][selectedY] = board[selectedX][selectedY].deselect();
 		pieceSelected = false;
 		resetLegalMoves();
+		fireChanged();
 	}
 
 	// place a piece on the board
 	private void placePiece(Integer x, Integer y) {
-		
+
 		// unselect the currently selected piece
 		deselectPiece();
-		// set the piece at board[x][y] to the current player (place the piece)
-		board[x][y] = turn;
-		
+
+		int to = Topology.pointAt(x, y);
+
 		// if in the placing phase...
-		if (placingPhase) {
-			
-			// remove the placed piece from the tray
-			removePiece(selectedX);
-			
-			// decrease the number of pieces to place
-			decreaseToPlace();
-
-			// end the placing phase if no piece left in tray
-			if (blueToPlace == 0 && redToPlace == 0)
-				placingPhase = false;
-		} 
-		// if not in placing phase, remove the piece moved from its original board location
+		if (position.isPlacingPhase()) {
+
+			// remove the placed piece from the tray and place it on the board (the placing phase ends when no
+			// piece is left in either tray)
+			applyMove(Move.place(to) | selectedX << RECORD_TRAY_SHIFT);
+		}
+		// if not in placing phase, move the piece from its original board location
 		else
-			removePiece(selectedX, selectedY);
+			applyMove(Move.move(Topology.pointAt(selectedX, selectedY), to));
+
+		fireChanged();
 	}
 
 	// removes piece at tray[x]
@@ -255,59 +404,155 @@ public class GameModel {
 		tray[x] = PieceType.UNOCCUPIED;
 	}
 
-	// removes piece at board[x][y]
+	// deletes the opponents piece at board[x][y]
 	private void removePiece(Integer x, Integer y) {
-		// remove the piece
-		board[x][y] = PieceType.UNOCCUPIED;
-		// decrease piece counts if it was a deletion, and unset the deletion required flag
-		if (deletionRequired) {
-			deletionRequired = false;
-			switch (turn) {
-			case BLUE:
-				redCount--;
-				break;
-			case RED:
-				blueCount--;
-				break;
-			default:
-				break;
-			}
+		applyMove(Move.capture(Topology.pointAt(x, y)));
+		fireChanged();
+	}
+
+	// makes the move of a record (see history) on the trays and board, sets the legal moves that follow from it,
+	// and adds it to the history and journal
+	private void applyMove(int record) {
+		makeRecord(record);
+
+		// a new move replaces any moves that were undone
+		if (historyTop == history.length)
+			history = Arrays.copyOf(history, history.length * 2);
+		history[historyTop++] = record;
+		historySize = historyTop;
+
+		journal(record);
+	}
+
+	// makes the move of a record on the trays and board
+	private void makeRecord(int record) {
+		int move = record & RECORD_MOVE;
+		if (Move.type(move) == Move.PLACE)
+			removePiece(record >>> RECORD_TRAY_SHIFT);
+		position.makeMove(move);
+		setFollowingLegalMoves();
+	}
+
+	// sets the legal moves for the position as it is after a move (or undo):  if a mill is made, the valid deletions
+	private void setFollowingLegalMoves() {
+		if (position.isDeletionRequired())
+			setValidDeletions();
+		else
+			resetLegalMoves();
+	}
+
+	// returns true if there is a move to undo
+	public boolean canUndo() {
+		return historyTop > 0;
+	}
+
+	// returns true if there is an undone move to make again
+	public boolean canRedo() {
+		return historyTop < historySize;
+	}
+
+	// takes back the last move (a placed piece goes back to the tray position it came from)
+	public void undo() {
+		if (!canUndo())
+			return;
+		if (pieceSelected)
+			deselectPiece();
+
+		int record = history[--historyTop];
+		int move = record & RECORD_MOVE;
+		position.unmakeMove(move);
+		if (Move.type(move) == Move.PLACE)
+			tray[record >>> RECORD_TRAY_SHIFT] = toPieceType(position.getTurn());
+		setFollowingLegalMoves();
+
+		journal(MoveJournal.UNDO);
+		fireChanged();
+	}
+
+	// makes the last undone move again
+	public void redo() {
+		if (!canRedo())
+			return;
+		if (pieceSelected)
+			deselectPiece();
+
+		makeRecord(history[historyTop++]);
+
+		journal(MoveJournal.REDO);
+		fireChanged();
+	}
+
+	// sets the journal each move, undo and redo is added to (null for none)
+	public void setJournal(MoveJournal journal) {
+		this.journal = journal;
+	}
+
+	// plays the records of a journal (see MoveJournal.getRecords) on a game started from the journal's start
+	public void replay(int[] records) {
+		MoveJournal saved = journal;
+		journal = null;
+		for (int record : records) {
+			if (record == MoveJournal.UNDO)
+				undo();
+			else if (record == MoveJournal.REDO)
+				redo();
+			else
+				applyMove(record);
+		}
+		journal = saved;
+		fireChanged();
+	}
+
+	// adds a record to the journal, if there is one (the game carries on without it if it cannot be written)
+	private void journal(int record) {
+		if (journal == null)
+			return;
+		try {
+			journal.append(record);
+			// a finished turn is written at once (the turn stays with the player only to take a piece), as is
+			// the end of a game
+			if (!position.isDeletionRequired() || isWinner())
+				journal.flush();
+		} catch (IOException e) {
+			e.printStackTrace();
+			journal = null;
 		}
 	}
 
 	// returns true if there is a winner
 	public Boolean isWinner() {
-		return winner != PieceType.UNOCCUPIED;
+		return position.getWinner() != Position.NONE;
 	}
 
 	// returns true if blue has won
 	public Boolean winnerIsBlue() {
-		return winner == PieceType.BLUE;
+		return position.getWinner() == Position.BLUE;
 	}
 
 	// returns true if red has won
 	public Boolean winnerIsRed() {
-		return winner == PieceType.RED;
+		return position.getWinner() == Position.RED;
 	}
 
 	// returns true if it is blue's turn
 	public Boolean isBlueTurn() {
-		return turn == PieceType.BLUE;
+		return position.getTurn() == Position.BLUE;
 	}
 
 	// returns true if it is red's turn
 	public Boolean isRedTurn() {
-		return turn == PieceType.RED;
+		return position.getTurn() == Position.RED;
 	}
 
 	// switches turn
 	public void nextTurn() {
-		turn = turn.swap();
+		position.nextTurn();
+		fireChanged();
 	}
-	
+
 	// returns true if a deletion is required to be made by the current player (due to forming a mill)
 	public Boolean requiresDeletion(){
-		return deletionRequired;
+		return position.isDeletionRequired();
 	}
 
 	// returns true if the space at tray[x] is empty
@@ -317,17 +562,20 @@ public class GameModel {
 
 	// returns true if the board space at board[x][y] is empty (and is a valid location for a piece)
 	public Boolean isUnoccupiedAt(Integer x, Integer y) {
-		return board[x][y] == PieceType.UNOCCUPIED;
+		int p = Topology.pointAt(x, y);
+		return p != -1 && position.sideAt(p) == Position.NONE;
 	}
 
 	// returns true if a blue piece is at board[x][y]
 	public Boolean isBlueAt(Integer x, Integer y) {
-		return board[x][y] == PieceType.BLUE || board[x][y] == PieceType.BLUE_SELECTED;
+		int p = Topology.pointAt(x, y);
+		return p != -1 && position.sideAt(p) == Position.BLUE;
 	}
 
 	// returns true if a red piece is at board[x][y]
 	public Boolean isRedAt(Integer x, Integer y) {
-		return board[x][y] == PieceType.RED || board[x][y] == PieceType.RED_SELECTED;
+		int p = Topology.pointAt(x, y);
+		return p != -1 && position.sideAt(p) == Position.RED;
 	}
 
 	// returns true if the piece at tray[x] is selected (red or blue)
@@ -337,17 +585,17 @@ public class GameModel {
 
 	// returns true if the piece at board[x][y] is selected (red or blue)
 	public Boolean isSelectedAt(Integer x, Integer y) {
-		return board[x][y] == PieceType.BLUE_SELECTED || board[x][y] == PieceType.RED_SELECTED;
+		return pieceSelected && !position.isPlacingPhase() && selectedX == x && selectedY == y;
 	}
 
 	// returns true if the spot at board[x][y] is invalid (not used in the model)
 	public Boolean isValidAt(Integer x, Integer y) {
-		return board[x][y] != PieceType.INVALID;
+		return Topology.pointAt(x, y) != -1 || Topology.isPathAt(x, y);
 	}
 
 	// returns true if the spot at board[x][y] is a space where a player's piece can go
 	public Boolean isBoardSpaceAt(Integer x, Integer y) {
-		return board[x][y] != PieceType.INVALID && board[x][y] != PieceType.PATH;
+		return Topology.pointAt(x, y) != -1;
 	}
 
 	// get square size of the board (the modeled board dimension)
@@ -357,331 +605,98 @@ public class GameModel {
 
 	// returns true if a legal move can be made at board[x][y]
 	public Boolean isLegalAt(Integer x, Integer y) {
-		return legalMoves[x][y] == PieceType.LEGAL;
-	}
-
-	// returns the number of pieces that the opponent currently has on the board
-	private Integer getOpponentCount() {
-		return turn == PieceType.BLUE ? redCount : blueCount;
-	}
-
-	// decrement the current player's number of pieces in tray
-	private void decreaseToPlace() {
-		switch (turn) {
-		case RED:
-			redToPlace--;
-			break;
-		case BLUE:
-			blueToPlace--;
-			break;
-		default:
-			break;
-		}
-	}
-
-	
-	// checks for a mill containing the piece at board[x][y]
-	private Boolean checkForMill(Integer x, Integer y) {
-
-		int count;
-		int i;
-		PieceType player = board[x][y];
-
-		// check left to right
-		i = 1;
-		count = 1;
-		while (x - i >= 0) {
-
-			if (board[x - i][y] == player)
-				count++;
-			else if (board[x - i][y] != PieceType.PATH)
-				break;
-			i++;
-
-		}
-
-		i = 1;
-		while (x + i < boardSize) {
-
-			if (board[x + i][y] == player)
-				count++;
-			else if (board[x + i][y] != PieceType.PATH)
-				break;
-			i++;
-
-		}
-
-		if (count == 3)
-			return true;
-
-		// check up and down
-		i = 1;
-		count = 1;
-		while (y - i >= 0) {
-
-			if (board[x][y - i] == player)
-				count++;
-			else if (board[x][y - i] != PieceType.PATH)
-				break;
-			i++;
-
-		}
-
-		i = 1;
-		while (y + i < boardSize) {
-
-			if (board[x][y + i] == player)
-				count++;
-			else if (board[x][y + i] != PieceType.PATH)
-				break;
-			i++;
-
-		}
-
-	
-		if (count == 3)
-			return true;
-
-		return false;
+		int p = Topology.pointAt(x, y);
+		return p != -1 && (legalMoves & (1 << p)) != 0;
 	}
 
 	// set legal moves in terms of which pieces may be deleted
 	private void setValidDeletions() {
-
-		// sets the player who's pieces will be examined to be the current opponent
-		PieceType player = turn.swap();
-
-		resetLegalMoves();
-
-		int nonMillPieces = 0;
-
-		// check for pieces and make legal to delete if not in mill
-		for (int i = 0; i < legalMoves.length; i++) {
-			for (int j = 0; j < legalMoves.length; j++) {
-				if (board[i][j] == player && !checkForMill(i, j)) {
-					legalMoves[i][j] = PieceType.LEGAL;
-					nonMillPieces++;
-				}
-			}
-		}
-
-		// if all pieces are in mills, then make deletion of any piece legal
-		if (nonMillPieces == 0) {
-			for (int i = 0; i < legalMoves.length; i++) {
-				for (int j = 0; j < legalMoves.length; j++) {
-					if (board[i][j] == player)
-						legalMoves[i][j] = PieceType.LEGAL;
-				}
-			}
-		}
-
-		// set flag to notify that a deletion is required
-		deletionRequired = true;
-
+		// pieces not in mills, or any piece if all pieces are in mills
+		legalMoves = position.getCaptureTargets();
 	}
 
 	// sets legal moves for a selected tray piece
 	private void setLegalMoves() {
-		resetLegalMoves();
-
 		// for a tray piece, a legal move is any unoccupied spot on the board
-		for (int i = 0; i < boardSize; i++) {
-			for (int j = 0; j < boardSize; j++) {
-				if (board[i][j] == PieceType.UNOCCUPIED)
-					legalMoves[i][j] = PieceType.LEGAL;
-			}
-		}
-
+		legalMoves = position.getEmpty();
 	}
 
 	// fills legalMoves will the positions of the legal moves for a piece located at board[x][y]
 	private void setLegalMoves(Integer x, Integer y) {
-
-		resetLegalMoves();
-
-		Boolean searchLeft = true, searchRight = true, searchUp = true, searchDown = true;
-
-		int i = 1;
-		
-		// search outwards in all directions from the piece at board[x][y] and set the move as legal if they lead to an unoccupied space
-		while (searchLeft || searchRight || searchDown || searchUp) {
-
-			if (x - i < 0)
-				searchLeft = false;
-			if (x + i >= boardSize)
-				searchRight = false;
-			if (y - i < 0)
-				searchUp = false;
-			if (y + i >= boardSize)
-				searchDown = false;
-
-			if (searchLeft && !(board[x - i][y] == PieceType.PATH)) {
-				searchLeft = false;
-				if (board[x - i][y] == PieceType.UNOCCUPIED)
-					legalMoves[x - i][y] = PieceType.LEGAL;
-			}
-
-			if (searchRight && !(board[x + i][y] == PieceType.PATH)) {
-				searchRight = false;
-				if (board[x + i][y] == PieceType.UNOCCUPIED)
-					legalMoves[x + i][y] = PieceType.LEGAL;
-			}
-
-			if (searchUp && !(board[x][y - i] == PieceType.PATH)) {
-				searchUp = false;
-				if (board[x][y - i] == PieceType.UNOCCUPIED)
-					legalMoves[x][y - i] = PieceType.LEGAL;
-			}
-
-			if (searchDown && !(board[x][y + i] == PieceType.PATH)) {
-				searchDown = false;
-				if (board[x][y + i] == PieceType.UNOCCUPIED)
-					legalMoves[x][y + i] = PieceType.LEGAL;
-			}
-
-			i++;
-		}
-
+		// a legal move is any unoccupied point linked to board[x][y]
+		legalMoves = Topology.neighbourMask(Topology.pointAt(x, y)) & position.getEmpty();
 	}
 
 	// gets the total number of legal moves available to the current player
 	private Integer getTotalMoves() {
-
-		int total = 0;
-
-		// iterate through board and count up the number of moves at each piece location of the current player
-		for (int i = 0; i < boardSize; i++) {
-			for (int j = 0; j < boardSize; j++) {
-				if (board[i][j] == turn)
-					total += countLegalMoves(i, j);
-			}
-		}
-
-		return total;
-	}
-
-	// counts the number of legal moves available to the piece at board[x][y]
-	private Integer countLegalMoves(Integer x, Integer y) {
-
-		if(board[x][y] == PieceType.UNOCCUPIED)
-			return 0;
-		
-		Integer moves = 0;
-		int i = 1;
-		Boolean searchLeft = true, searchRight = true, searchUp = true, searchDown = true;
-
-		// counts moves outwards (left, right, up, down) from piece at board[x][y]
-		while (searchLeft || searchRight || searchDown || searchUp) {
-
-			if (x - i < 0)
-				searchLeft = false;
-			if (x + i >= boardSize)
-				searchRight = false;
-			if (y - i < 0)
-				searchUp = false;
-			if (y + i >= boardSize)
-				searchDown = false;
-
-			if (searchLeft && !(board[x - i][y] == PieceType.PATH)) {
-				searchLeft = false;
-				if (board[x - i][y] == PieceType.UNOCCUPIED)
-					moves++;
-			}
-
-			if (searchRight && !(board[x + i][y] == PieceType.PATH)) {
-				searchRight = false;
-				if (board[x + i][y] == PieceType.UNOCCUPIED)
-					moves++;
-			}
-
-			if (searchUp && !(board[x][y - i] == PieceType.PATH)) {
-				searchUp = false;
-				if (board[x][y - i] == PieceType.UNOCCUPIED)
-					moves++;
-			}
-
-			if (searchDown && !(board[x][y + i] == PieceType.PATH)) {
-				searchDown = false;
-				if (board[x][y + i] == PieceType.UNOCCUPIED)
-					moves++;
-			}
-
-			i++;
-
-		}
-
-		return moves;
-
+		return position.countMoves(position.getTurn());
 	}
 
-	// sets legalMoves entries all to ILLEGAL
+	// clears all legal moves
 	private void resetLegalMoves() {
-		for (int i = 0; i < legalMoves.length; i++)
-			for (int j = 0; j < legalMoves.length; j++)
-				legalMoves[i][j] = PieceType.ILLEGAL;
+		legalMoves = 0;
 	}
 
 	// save game to outFile
 	public void save(File outFile) {
 
-		try {
-			PrintStream output = new PrintStream(outFile);
-
-			output.println(fileVersion);
-
-			for (int i = 0; i < board.length; i++)
-				for (int j = 0; j < board.length; j++)
-					output.println(board[i][j].ordinal());
-
-			for (int i = 0; i < tray.length; i++)
-				output.println(tray[i].ordinal());
+		ByteBuffer buffer = getSaveData();
 
-			for (int i = 0; i < legalMoves.length; i++)
-				for (int j = 0; j < legalMoves.length; j++)
-					output.println(legalMoves[i][j].ordinal());
+		try {
+			RandomAccessFile output = new RandomAccessFile(outFile, "rw");
+			try {
+				FileChannel channel = output.getChannel();
+				channel.truncate(0);
+				while (buffer.hasRemaining())
+					channel.write(buffer);
+			} finally {
+				output.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
 
-			output.println(blueCount);
-			output.println(redCount);
-			output.println(blueToPlace);
-			output.println(redToPlace);
-			output.println(turn.ordinal());
-			output.println(placingPhase);
-			output.println(pieceSelected);
-			output.println(deletionRequired);
-			output.println(selectedX);
-			output.println(selectedY);
-			output.println(winner.ordinal());
+	}
 
-			output.close();
+	// returns the state of the game as it is saved to a file
+	public ByteBuffer getSaveData() {
 
-		} catch (FileNotFoundException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		}
+		int trays = 0;
+		for (int i = 0; i < tray.length; i++)
+			if (tray[i] != PieceType.UNOCCUPIED)
+				trays |= 1 << i;
 
+		ByteBuffer buffer = ByteBuffer.allocate(SAVE_SIZE);
+		buffer.putLong(SAVE_MAGIC).putInt(SAVE_VERSION);
+		buffer.putShort((short) position.getPieces(Position.BLUE)).putShort((short) position.getPieces(Position.RED));
+		buffer.putShort((short) trays);
+		buffer.put((byte) position.getTurn()).put((byte) position.getWinner());
+		buffer.put((byte) ((pieceSelected ? SAVE_SELECTED : 0) | (position.isDeletionRequired() ? SAVE_DELETION_REQUIRED : 0)));
+		buffer.put((byte) selectedX).put((byte) selectedY);
+		buffer.flip();
+		return buffer;
 	}
-	
+
 	// cycle pieces on the board:  UNOCCUPIED -> BLUE -> RED -> UNOCCUPIED...
 	public void cyclePieces(Integer i, Integer j){
-		switch(board[i][j]){
-		case BLUE:
-			board[i][j] = PieceType.RED;
-			blueCount--;
-			redCount++;
+		int p = Topology.pointAt(i, j);
+		if (p == -1)
+			return;
+		switch(position.sideAt(p)){
+		case Position.BLUE:
+			position.clear(p);
+			position.set(p, Position.RED);
 			break;
-		case RED:
-			board[i][j] = PieceType.UNOCCUPIED;
-			redCount--;
-			break;
-		case UNOCCUPIED:
-			board[i][j] = PieceType.BLUE;
-			blueCount++;
+		case Position.RED:
+			position.clear(p);
 			break;
 		default:
+			position.set(p, Position.BLUE);
 			break;
 		}
+		fireChanged();
 	}
-	
+
 	// cycle pieces in the trays:
 	//		UNOCCUPIED -> BLUE -> UNOCCUPIED... in blue tray
 	//		UNOCCUPIED -> RED -> UNOCCUPIED... in red tray
@@ -690,63 +705,66 @@ public class GameModel {
 		case UNOCCUPIED:
 			if(i < pieceCount){
 				tray[i] = PieceType.BLUE;
-				blueToPlace++;
-				blueCount++;
+				position.setToPlace(Position.BLUE, position.getToPlace(Position.BLUE) + 1);
 			}
 			else {
 				tray[i] = PieceType.RED;
-				redToPlace++;
-				redCount++;
+				position.setToPlace(Position.RED, position.getToPlace(Position.RED) + 1);
 			}
 			break;
 		case BLUE:
 			tray[i] = PieceType.UNOCCUPIED;
-			blueToPlace--;
-			blueCount--;
+			position.setToPlace(Position.BLUE, position.getToPlace(Position.BLUE) - 1);
 			break;
 		case RED:
 			tray[i] = PieceType.UNOCCUPIED;
-			redToPlace--;
-			redCount--;
+			position.setToPlace(Position.RED, position.getToPlace(Position.RED) - 1);
 			break;
 		default:
 			break;
 		}
-		
-		// set placing phase -- it may change!
-		placingPhase = blueToPlace > 0 || redToPlace > 0;
+
+		// the placing phase follows from the pieces left in the trays -- it may change!
+		fireChanged();
 	}
-	
+
 	// true if the board is being customized
 	public Boolean isCustomizing(){
-		return customizing; 
+		return customizing;
 	}
 
 	// ends customization
 	public void endCustomization(){
 		customizing = false;
-		
+
 		// check for win conditions and set before play begins
-		
-		if (turn == PieceType.BLUE && blueToPlace == 0 || turn == PieceType.RED && redToPlace == 0)
+
+		if (position.getToPlace(position.getTurn()) == 0)
 			if (getTotalMoves() == 0)
-				winner = turn.swap();
-		
-		if (blueCount == losingPieceCount)
-			winner = PieceType.RED;
-		if (redCount == losingPieceCount)
-			winner = PieceType.BLUE;
-		
-	}
-	
-	
+				position.setWinner(Position.opponent(position.getTurn()));
+
+		if (position.getCount(Position.BLUE) == losingPieceCount)
+			position.setWinner(Position.RED);
+		if (position.getCount(Position.RED) == losingPieceCount)
+			position.setWinner(Position.BLUE);
+
+		fireChanged();
+	}
+
+
 	// to be called before ending the creation of a customized game
 	// produces an error string if the board state is not a legal game
 	public String validateBoard(){
-		
+
+		int blueCount = position.getCount(Position.BLUE);
+		int redCount = position.getCount(Position.RED);
+		int blueToPlace = position.getToPlace(Position.BLUE);
+		int redToPlace = position.getToPlace(Position.RED);
+		int turn = position.getTurn();
+
 		System.out.println(blueCount);
 		System.out.println(redCount);
-		
+
 		if(blueCount < losingPieceCount)
 			return "Number of blue pieces must be at least " + losingPieceCount;
 		if(blueCount > pieceCount)
@@ -757,22 +775,10 @@ public class GameModel {
 			return "Number of red pieces must be at most " + pieceCount;
 		if(blueCount == losingPieceCount && redCount == losingPieceCount)
 			return "Number of blue and red pieces cannot both be " + losingPieceCount;
-		
-		int blueInMills = 0;
-		int redInMills = 0;
-		for (int i = 0; i < board.length; i++){
-			for (int j = 0; j < board.length; j++){
-				if(board[i][j] == PieceType.BLUE){
-					if(checkForMill(i,j))
-						blueInMills++;
-				}
-				else if(board[i][j] == PieceType.RED){
-					if(checkForMill(i,j))
-						redInMills++;
-				}
-			}
-		}
-		
+
+		int blueInMills = Integer.bitCount(position.getMillPieces(Position.BLUE));
+		int redInMills = Integer.bitCount(position.getMillPieces(Position.RED));
+
 		if(blueInMills == 3 && redCount > pieceCount - 1)
 			return "Number of red pieces must be at most " + (pieceCount - 1) + " due to 1 blue mill";
 		if(blueInMills > 3 && redCount > pieceCount - 2)
@@ -781,13 +787,13 @@ public class GameModel {
 			return "Number of blue pieces must be at most " + (pieceCount - 1) + " due to 1 red mill";
 		if(redInMills > 3 && blueCount > pieceCount - 2)
 			return "Number of blue pieces must be at most " + (pieceCount - 2) + " due to 2 red mills";
-		
-		if(placingPhase){
+
+		if(position.isPlacingPhase()){
 			if(Math.abs(blueToPlace - redToPlace) > 1)
 				return "Number of pieces in tray must be within 1";
-			if(blueToPlace < redToPlace && turn == PieceType.BLUE)
+			if(blueToPlace < redToPlace && turn == Position.BLUE)
 				return "Turn must be red";
-			if(redToPlace < blueToPlace && turn == PieceType.RED)
+			if(redToPlace < blueToPlace && turn == Position.RED)
 				return "Turn must be blue";
 			if(blueToPlace == pieceCount - 1 && blueCount != pieceCount)
 				return "Blue must have 1 piece on the board with " + blueToPlace + " in tray";
@@ -797,22 +803,22 @@ public class GameModel {
 				return "Blue must have at least 2 pieces on the board with " + blueToPlace + " in tray";
 			if(redToPlace < pieceCount - 1 && redCount - redToPlace < 2)
 				return "Red must have at least 2 pieces on the board with " + redToPlace + " in tray";
-			
+
 		}
-		
+
 		return null;
 	}
-	
-	
+
+
 	// main game logic: attempt to make play at tray[x]
 	public void play(Integer x){
-		
+
 		// if there is a winner, do nothing
-		if(winner != PieceType.UNOCCUPIED)
+		if(isWinner())
 			return;
-		
+
 		// if the game is in the placing phase and no piece currently needs to be selected for deletion...
-		if(placingPhase && !deletionRequired){
+		if(position.isPlacingPhase() && !position.isDeletionRequired()){
 			// if the current player "owns" the piece at tray[x]...
 			if (isOwnerAt(x)) {
 				// if the piece at tray[x] is selected, unselect it and return
@@ -828,54 +834,31 @@ public class GameModel {
 			}
 		}
 	}
-	
+
 	// main game logic: attempt to make play at board[x][y]
 	public void play(Integer x, Integer y){
-		
+
 		// if there is a winner, do nothing
-		if(winner != PieceType.UNOCCUPIED)
+		if(isWinner())
 			return;
-		
+
 		// if a piece needs to be selected for deletion...
-		if(deletionRequired){
+		if(position.isDeletionRequired()){
 			// if the piece at board[x][y] is a valid piece to delete...
-			if (isLegalAt(x, y)) {
-				// delete it...
+			//		delete it -> the position declares this player the winner if the opponent is reduced
+			//		to the losing number of pieces or left without a move, and switches turns
+			if (isLegalAt(x, y))
 				removePiece(x, y);
-				// and check if the opponent has been reduced to the losing number of pieces
-				// 		if so -> declare this player the winner
-				if (getOpponentCount() == losingPieceCount)
-					winner = turn;
-				// switch turns
-				nextTurn();
-				// check if the switched-to player can make any moves
-				// 		if not -> declare opponent the winner
-				if (getTotalMoves() == 0) {
-					winner = turn.swap();
-				}
-			}
 		}
-		
+
 		// else if it is the placing phase...
-		else if(placingPhase){
+		else if(position.isPlacingPhase()){
 			// and a piece is selected, and board[x][y] is unoccupied then move the selected piece to board[x][y]
-			if(pieceSelected && board[x][y] == PieceType.UNOCCUPIED) {
+			//		the position then checks for a mill, checks if a player who emptied their tray can still move,
+			//		and switches turns
+			if(pieceSelected && isUnoccupiedAt(x, y))
 				placePiece(x, y);
-				// check if a mill is made;  if so -> set legal moves as the valid deletions
-				if (checkForMill(x, y))
-					setValidDeletions();
-				// if a mill isn't made...
-				else {
-					// if the player placed the piece just emptied their tray, check if they can make a valid move
-					//		if not -> declare opponent the winner
-					if (turn == PieceType.BLUE && blueToPlace == 0 || turn == PieceType.RED && redToPlace == 0)
-						if (getTotalMoves() == 0)
-							winner = turn.swap();
-					// switch turns
-					nextTurn();
-				}
-			}
-		} 
+		}
 		// else it must be the moving phase...
 		else {
 			// if the current player "owns" the piece at board[x][y]...
@@ -892,18 +875,41 @@ public class GameModel {
 				selectPiece(x, y);
 			}
 
-			else if (pieceSelected && isLegalAt(x, y)) {
+			// move the selected piece to board[x][y];  the position checks for a mill, switches turns,
+			// and checks if the switched-to player can make any moves
+			else if (pieceSelected && isLegalAt(x, y))
 				placePiece(x, y);
-				if (checkForMill(x, y))
-					setValidDeletions();
-				else {
-					nextTurn();
-					if (getTotalMoves() == 0)
-						winner = turn.swap();
+		}
+	}
+
+	// makes a move produced by Position.generateMoves by playing the same tray/board selections a player would
+	public void playMove(int move) {
+
+		int to = Move.to(move);
+
+		switch (Move.type(move)) {
+		case Move.PLACE:
+			// select the first piece left in the current player's tray
+			for (int i = 0; i < tray.length; i++) {
+				if (isOwnerAt(i)) {
+					if (!isSelectedAt(i))
+						play(i);
+					break;
 				}
 			}
-		}	
+			break;
+		case Move.MOVE:
+			// select the piece being moved
+			int from = Move.from(move);
+			if (!isSelectedAt(Topology.xOf(from), Topology.yOf(from)))
+				play(Topology.xOf(from), Topology.yOf(from));
+			break;
+		default:
+			break;
+		}
+
+		// place, move to, or delete at the target point
+		play(Topology.xOf(to), Topology.yOf(to));
 	}
-	
-	
+
 }
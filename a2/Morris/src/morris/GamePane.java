@@ -1,6 +1,7 @@
 package morris;
 
 import java.awt.geom.Ellipse2D;
+import java.awt.image.BufferedImage;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
@@ -8,12 +9,19 @@ import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.Point;
 import java.awt.Rectangle;
+import java.awt.Transparency;
 
 import javax.swing.JPanel;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 
-public class GamePane extends JPanel {
+// View of a game:  repaints only the parts of the window that change, when the model says it has changed
+// The parts of the window that never change (board lines and spaces) are drawn once into a background image, and
+// the pieces and legal move markers are drawn once into small sprite images, so a repaint only copies images.
+public class GamePane extends JPanel implements ChangeListener {
 
 	private static final long serialVersionUID = 1L;
 	
@@ -47,6 +55,32 @@ public class GamePane extends JPanel {
 	// error string that is displayed during custom board creation -- null if no error
 	private String errorString;
 
+	// what was last painted at each board space and tray position, and the turn/winner shown (see stateOf)
+	private final int[][] shownBoard;
+	private final int[] shownTray;
+	private int shownInfo;
+
+	// number of menu items in each column
+	private static final int MENU_ROWS = 2;
+
+	// extra space around a piece that its selection circle reaches into
+	private static final int PIECE_MARGIN = 4;
+
+	// strokes for the lines and outlines, and for the circle around a selected piece
+	private static final BasicStroke LINE_STROKE = new BasicStroke(2);
+	private static final BasicStroke SELECTED_STROKE = new BasicStroke(5);
+
+	// the unchanging parts of the window, and the sprites drawn over them (all created by the first paint)
+	private BufferedImage background;
+	private BufferedImage blueSprite;
+	private BufferedImage redSprite;
+	private BufferedImage blueSelectedSprite;
+	private BufferedImage redSelectedSprite;
+	private BufferedImage legalSprite;
+
+	// distance from the top left of a sprite to the centre of what it shows
+	private final int spriteCentre;
+
 	public GamePane(GameModel gameModel) {
 		super();
 		
@@ -56,7 +90,7 @@ public class GamePane extends JPanel {
 		if(gameModel.isCustomizing())
 			menuItems = new String[]{ "Exit to Menu", "Switch Turn", "Play" };
 		else
-			menuItems = new String[]{ "Exit to Menu", "Save Game" };
+			menuItems = new String[]{ "Exit to Menu", "Save Game", "Undo", "Redo" };
 
 		// sets window height based on width
 		winY = (int) (1.2 * (double) winX);
@@ -83,6 +117,8 @@ public class GamePane extends JPanel {
 		traySpace = (winX - 6 * leftGap) / (2 * (gameModel.getPieceCount() - 1));
 
 		this.segmentLen = segmentLen;
+
+		spriteCentre = PIECE_MARGIN + pieceDiameter / 2;
 		
 		// set font to be used in text rendering
 		f = new Font("Dialog", Font.PLAIN, 20);
@@ -113,21 +149,90 @@ public class GamePane extends JPanel {
 		for (int i = 0; i < menuItems.length; i++) {
 			int w = fm.stringWidth(menuItems[i]);
 			int h = fm.getHeight();
-			inputMapMenu[i] = new Rectangle(leftGap / 2, winY + leftGap/4 - (i + 1) * leftGap / 2 - h + fm.getDescent(), w, h);
+			inputMapMenu[i] = new Rectangle(menuX(i), menuY(i) - h + fm.getDescent(), w, h);
 		}
 
 		highlight = -1;
 		
 		errorString = null;
+
+		shownBoard = new int[gameModel.getBoardSize()][gameModel.getBoardSize()];
+		shownTray = new int[gameModel.getPieceCount() * 2];
+		for (int i = 0; i < gameModel.getBoardSize(); i++)
+			for (int j = 0; j < gameModel.getBoardSize(); j++)
+				shownBoard[i][j] = stateOf(i, j);
+		for (int i = 0; i < shownTray.length; i++)
+			shownTray[i] = stateOf(i);
+		shownInfo = infoState();
+
+		gameModel.addChangeListener(this);
+	}
+
+	// repaints the board spaces, tray positions and info line that look different after a change to the model
+	@Override
+	public void stateChanged(ChangeEvent e) {
+		for (int i = 0; i < gameModel.getBoardSize(); i++) {
+			for (int j = 0; j < gameModel.getBoardSize(); j++) {
+				int state = stateOf(i, j);
+				if (state != shownBoard[i][j]) {
+					shownBoard[i][j] = state;
+					repaintAround(inputMapBoard[i][j]);
+				}
+			}
+		}
+
+		for (int i = 0; i < shownTray.length; i++) {
+			int state = stateOf(i);
+			if (state != shownTray[i]) {
+				shownTray[i] = state;
+				repaintAround(inputMapTray[i]);
+			}
+		}
+
+		int info = infoState();
+		if (info != shownInfo) {
+			shownInfo = info;
+			repaint(0, winY - leftGap - fm.getAscent(), winX, fm.getHeight());
+		}
+	}
+
+	// returns what is drawn at board space (i, j):  the piece, whether it is selected, and whether it is a legal move
+	private int stateOf(int i, int j) {
+		int state = gameModel.isBlueAt(i, j) ? 1 : gameModel.isRedAt(i, j) ? 2 : 0;
+		if (gameModel.isSelectedAt(i, j))
+			state |= 4;
+		if ((gameModel.isSelected() || gameModel.requiresDeletion()) && gameModel.isLegalAt(i, j))
+			state |= 8;
+		return state;
+	}
+
+	// returns what is drawn at tray position i:  whether there is a piece and whether it is selected
+	private int stateOf(int i) {
+		return (gameModel.isUnoccupiedAt(i) ? 0 : 1) | (gameModel.isSelectedAt(i) ? 2 : 0);
+	}
+
+	// returns what the info line shows:  the winner, or whose turn it is
+	private int infoState() {
+		return gameModel.isWinner() ? (gameModel.winnerIsBlue() ? 1 : 2) : (gameModel.isBlueTurn() ? 3 : 4);
+	}
+
+	// repaints a piece sized area, with room for its selection circle
+	private void repaintAround(Rectangle area) {
+		if (area != null)
+			repaint(area.x - PIECE_MARGIN, area.y - PIECE_MARGIN, area.width + 2 * PIECE_MARGIN, area.height + 2 * PIECE_MARGIN);
 	}
 
 	// paints the game state to the screen
 	@Override
 	protected void paintComponent(Graphics g) {
+		if (background == null)
+			createImages();
+
 		Graphics2D g2d = (Graphics2D) g;
-		g2d.setStroke(new BasicStroke(2));
 		g2d.setFont(f);
 
+		// draw the board lines and spaces (this covers the whole window, so nothing needs clearing first)
+		g2d.drawImage(background, 0, 0, null);
 		// draw the trays
 		drawTrays(g2d);
 		// draw the board
@@ -141,28 +246,49 @@ public class GamePane extends JPanel {
 		
 	}
 
-	// iterates through trays and draws pieces
-	private void drawTrays(Graphics2D g2d){
-		for (int i = 0; i < gameModel.getPieceCount(); i++) {
+	// draws the background and sprites, in a format suited to the screen the window is on
+	private void createImages() {
+		background = createImage(winX, winY, Transparency.OPAQUE);
+		Graphics2D g2d = background.createGraphics();
+		g2d.setColor(getBackground());
+		g2d.fillRect(0, 0, winX, winY);
+		g2d.setColor(Color.BLACK);
+		g2d.setStroke(LINE_STROKE);
+		drawBackground(g2d);
+		g2d.dispose();
+
+		blueSprite = createSprite(Color.BLUE, false);
+		redSprite = createSprite(Color.RED, false);
+		blueSelectedSprite = createSprite(Color.BLUE, true);
+		redSelectedSprite = createSprite(Color.RED, true);
+
+		legalSprite = createImage(2 * spriteCentre, 2 * spriteCentre, Transparency.TRANSLUCENT);
+		g2d = legalSprite.createGraphics();
+		g2d.setStroke(LINE_STROKE);
+		drawNode(g2d, spriteCentre, spriteCentre, Color.GREEN);
+		g2d.dispose();
+	}
 
-			int j = gameModel.getPieceCount() * 2 - 1 - i;
+	// returns a sprite of a piece
+	private BufferedImage createSprite(Color col, boolean selected) {
+		BufferedImage sprite = createImage(2 * spriteCentre, 2 * spriteCentre, Transparency.TRANSLUCENT);
+		Graphics2D g2d = sprite.createGraphics();
+		g2d.setStroke(LINE_STROKE);
+		drawPiece(g2d, col, spriteCentre, spriteCentre, selected);
+		g2d.dispose();
+		return sprite;
+	}
 
-			// draw small nodes representing the tray positions for custom game creation
-			if(gameModel.isCustomizing()){
-				drawNode(g2d, leftGap * 2 + traySpace * i, trayGap, Color.BLACK);
-				drawNode(g2d, winX - leftGap * 2 - traySpace * i, trayGap, Color.BLACK);
-			}
-			
-			// draw tray pieces
-			if (!gameModel.isUnoccupiedAt(i))
-				drawPiece(g2d, Color.BLUE, leftGap * 2 + traySpace * i, trayGap, gameModel.isSelectedAt(i));
-			if (!gameModel.isUnoccupiedAt(j))
-				drawPiece(g2d, Color.RED, winX - leftGap * 2 - traySpace * i, trayGap, gameModel.isSelectedAt(j));
-		}
+	// returns an image compatible with the screen, so that drawing it is a plain copy (any image if there is no screen)
+	private BufferedImage createImage(int width, int height, int transparency) {
+		GraphicsConfiguration configuration = getGraphicsConfiguration();
+		if (configuration != null)
+			return configuration.createCompatibleImage(width, height, transparency);
+		return new BufferedImage(width, height, transparency == Transparency.OPAQUE ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB);
 	}
-	
-	// iterates through board locations and draws lines and pieces that form the board
-	private void drawBoard(Graphics2D g2d){
+
+	// draws the parts of the window that never change:  board lines and spaces, and the tray positions of a custom game
+	private void drawBackground(Graphics2D g2d){
 		for (int i = 0; i < gameModel.getBoardSize(); i++) {
 			for (int j = 0; j < gameModel.getBoardSize(); j++) {
 				// draw horizontal board lines
@@ -174,17 +300,46 @@ public class GamePane extends JPanel {
 				if (j != gameModel.getBoardSize() - 1)
 					if (gameModel.isValidAt(i, j) && gameModel.isValidAt(i, j + 1))
 						g2d.drawLine(leftGap + segmentLen * i, topGap + segmentLen * j, leftGap + segmentLen * i, topGap + segmentLen * (j + 1));
-				
-				// draw small nodes at the board spaces
+			}
+		}
+
+		// draw small nodes at the board spaces (over the lines)
+		for (int i = 0; i < gameModel.getBoardSize(); i++)
+			for (int j = 0; j < gameModel.getBoardSize(); j++)
 				if (gameModel.isBoardSpaceAt(i, j))
 					drawNode(g2d, leftGap + segmentLen * i, topGap + segmentLen * j, Color.BLACK);
 
-				// draw pieces
+		// draw small nodes representing the tray positions for custom game creation
+		if (gameModel.isCustomizing()) {
+			for (int i = 0; i < gameModel.getPieceCount(); i++) {
+				drawNode(g2d, leftGap * 2 + traySpace * i, trayGap, Color.BLACK);
+				drawNode(g2d, winX - leftGap * 2 - traySpace * i, trayGap, Color.BLACK);
+			}
+		}
+	}
+
+	// iterates through trays and draws pieces
+	private void drawTrays(Graphics2D g2d){
+		for (int i = 0; i < gameModel.getPieceCount(); i++) {
+
+			int j = gameModel.getPieceCount() * 2 - 1 - i;
+
+			// draw tray pieces
+			if (!gameModel.isUnoccupiedAt(i))
+				drawSprite(g2d, gameModel.isSelectedAt(i) ? blueSelectedSprite : blueSprite, leftGap * 2 + traySpace * i, trayGap);
+			if (!gameModel.isUnoccupiedAt(j))
+				drawSprite(g2d, gameModel.isSelectedAt(j) ? redSelectedSprite : redSprite, winX - leftGap * 2 - traySpace * i, trayGap);
+		}
+	}
+	
+	// iterates through board locations and draws the pieces on the board
+	private void drawBoard(Graphics2D g2d){
+		for (int i = 0; i < gameModel.getBoardSize(); i++) {
+			for (int j = 0; j < gameModel.getBoardSize(); j++) {
 				if (gameModel.isBlueAt(i, j))
-					drawPiece(g2d, Color.BLUE, leftGap + segmentLen * i, topGap + segmentLen * j, gameModel.isSelectedAt(i, j));
+					drawSprite(g2d, gameModel.isSelectedAt(i, j) ? blueSelectedSprite : blueSprite, leftGap + segmentLen * i, topGap + segmentLen * j);
 				else if (gameModel.isRedAt(i, j))
-					drawPiece(g2d, Color.RED, leftGap + segmentLen * i, topGap + segmentLen * j, gameModel.isSelectedAt(i, j));
-
+					drawSprite(g2d, gameModel.isSelectedAt(i, j) ? redSelectedSprite : redSprite, leftGap + segmentLen * i, topGap + segmentLen * j);
 			}
 		}
 	}
@@ -195,9 +350,14 @@ public class GamePane extends JPanel {
 			for (int i = 0; i < gameModel.getBoardSize(); i++)
 				for (int j = 0; j < gameModel.getBoardSize(); j++)
 					if (gameModel.isLegalAt(i, j))
-						drawNode(g2d, leftGap + segmentLen * i, topGap + segmentLen * j, Color.GREEN);
+						drawSprite(g2d, legalSprite, leftGap + segmentLen * i, topGap + segmentLen * j);
 		}
 	}
+
+	// draws a sprite with its centre at (x, y)
+	private void drawSprite(Graphics2D g2d, BufferedImage sprite, int x, int y) {
+		g2d.drawImage(sprite, x - spriteCentre, y - spriteCentre, null);
+	}
 	
 	// draws game info:  displays the current turn or winner
 	private void drawInfo(Graphics2D g2d){
@@ -235,21 +395,31 @@ public class GamePane extends JPanel {
 		// draw the menu text
 		g2d.setColor(Color.BLACK);
 		for (int i = 0; i < menuItems.length; i++)
-			g2d.drawString(menuItems[i], leftGap / 2, winY + leftGap/4 - (i + 1) * leftGap / 2);
+			g2d.drawString(menuItems[i], menuX(i), menuY(i));
 
 		// if the errorString is not null, display the error at the top of the screen
 		if(errorString != null){
 			int w = fm.stringWidth(errorString);
 			int h = fm.getHeight();
 			g2d.setColor(Color.YELLOW);
-			g2d.fill(new Rectangle(winX / 2 - w / 2, leftGap/2 - h + fm.getDescent(), w, h));
+			g2d.fillRect(winX / 2 - w / 2, leftGap/2 - h + fm.getDescent(), w, h);
 			g2d.setColor(Color.RED);
 			g2d.drawString(errorString, winX / 2 - fm.stringWidth(errorString) / 2, leftGap/2);
 			g2d.setColor(Color.BLACK);
 		}
 	}
 	
-	// draws a game piece with center at (x, y)
+	// returns the left of menu item i:  the items are in two columns of MENU_ROWS, one on each side of the window
+	private int menuX(int i) {
+		return i < MENU_ROWS ? leftGap / 2 : winX - leftGap / 2 - fm.stringWidth(menuItems[i]);
+	}
+
+	// returns the baseline of menu item i (each column is filled from the bottom up)
+	private int menuY(int i) {
+		return winY + leftGap/4 - (i % MENU_ROWS + 1) * leftGap / 2;
+	}
+
+	// draws a game piece with center at (x, y) (used to draw the sprites)
 	private void drawPiece(Graphics2D g2d, Color col, int x, int y, boolean selected) {
 
 		x = x - pieceDiameter / 2;
@@ -262,9 +432,9 @@ public class GamePane extends JPanel {
 		// draw a thick yellow circle around the piece if it is currently selected
 		if (selected) {
 			g2d.setColor(Color.YELLOW);
-			g2d.setStroke(new BasicStroke(5));
+			g2d.setStroke(SELECTED_STROKE);
 			g2d.drawOval(x, y, pieceDiameter, pieceDiameter);
-			g2d.setStroke(new BasicStroke(2));
+			g2d.setStroke(LINE_STROKE);
 		}
 
 		// draw a thin black circle around the piece
@@ -273,7 +443,7 @@ public class GamePane extends JPanel {
 
 	}
 
-	// draws a small node with center (x, y)
+	// draws a small node with center (x, y) (used to draw the background and sprites)
 	private void drawNode(Graphics2D g2d, int x, int y, Color col) {
 
 		x = x - pieceDiameter / 4;
@@ -289,22 +459,37 @@ public class GamePane extends JPanel {
 
 	}
 
-	// checks if a point is contained in the on screen trays at index i
-	public Boolean clickInTray(Point mouseClick, Integer i) {
-		if (inputMapTray[i] == null)
-			return false;
-		if (inputMapTray[i].contains(mouseClick))
-			return true;
-		return false;
+	// returns the board point (see Topology) of the board space containing a point, or -1 if it is not on one
+	// the nearest space is found from the spacing of the board, so only its area needs checking
+	public int boardPointAt(Point p) {
+		int i = nearest(p.x - leftGap, segmentLen);
+		int j = nearest(p.y - topGap, segmentLen);
+		if (i < 0 || j < 0 || i >= gameModel.getBoardSize() || j >= gameModel.getBoardSize())
+			return -1;
+		if (inputMapBoard[i][j] == null || !inputMapBoard[i][j].contains(p))
+			return -1;
+		return Topology.pointAt(i, j);
 	}
 
-	// checks if a point is contained in the on screen board at index (i, j)
-	public Boolean clickInBoard(Point mouseClick, Integer i, Integer j) {
-		if (inputMapBoard[i][j] == null)
-			return false;
-		if (inputMapBoard[i][j].contains(mouseClick))
-			return true;
-		return false;
+	// returns the tray index of the tray position containing a point, or -1 if it is not on one
+	// the nearest position in each tray is found from the spacing of the trays, so only its area needs checking
+	public int traySlotAt(Point p) {
+		int i = nearest(p.x - leftGap * 2, traySpace);
+		if (i >= 0 && i < gameModel.getPieceCount() && inputMapTray[i].contains(p))
+			return i;
+
+		i = nearest(winX - leftGap * 2 - p.x, traySpace);
+		if (i >= 0 && i < gameModel.getPieceCount() && inputMapTray[inputMapTray.length - 1 - i].contains(p))
+			return inputMapTray.length - 1 - i;
+
+		return -1;
+	}
+
+	// returns the index of the nearest of a row of points spacing apart to an offset from the first point
+	// (negative if the offset is more than half a space before the first point)
+	private static int nearest(int offset, int spacing) {
+		int shifted = offset + spacing / 2;
+		return shifted < 0 ? -1 : shifted / spacing;
 	}
 
 	// checks if a point is contained in the on screen menu at index i
@@ -316,24 +501,30 @@ public class GamePane extends JPanel {
 		return false;
 	}
 	
-	// sets error string
+	// sets error string, and repaints the top of the window where it is shown
 	public void setErrorString(String error){
 		errorString = error;
+		repaint(0, 0, winX, leftGap / 2 + fm.getDescent());
 	}
 
-	// sets highlight to a menu item if it contains the specified point
+	// sets highlight to a menu item if it contains the specified point, repainting the menu items whose highlight changed
 	public void highlightMenu(Point p) {
 
+		int newHighlight = -1;
 		for (int i = 0; i < inputMapMenu.length; i++) {
-			if (inputMapMenu[i] == null)
-				continue;
-			if (inputMapMenu[i].contains(p)) {
-				highlight = i;
+			if (inputMapMenu[i] != null && inputMapMenu[i].contains(p)) {
+				newHighlight = i;
 				break;
 			}
-
-			highlight = -1;
 		}
 
+		if (newHighlight == highlight)
+			return;
+		if (highlight != -1)
+			repaint(inputMapMenu[highlight]);
+		if (newHighlight != -1)
+			repaint(inputMapMenu[newHighlight]);
+		highlight = newHighlight;
+
 	}
 }
@@ -32,14 +32,20 @@ public class Menu extends Environment {
 			return new Game();
 		}
 		
-		// start customizing game
+		// start new game against the computer
 		else if (view.clickInMenu(mouseClick, 1)) {
+			dispose();
+			return new Game(true);
+		}
+		
+		// start customizing game
+		else if (view.clickInMenu(mouseClick, 2)) {
 			dispose();
 			return new CustomGame();
 		}
 
 		// load a saved game
-		else if (view.clickInMenu(mouseClick, 2)) {
+		else if (view.clickInMenu(mouseClick, 3)) {
 			FileDialog fd = new FileDialog(this, "Load Game...");
 			fd.setVisible(true);
 			if (fd.getFile() != null){
@@ -56,7 +62,7 @@ public class Menu extends Environment {
 
 		Point mouseClick = SwingUtilities.convertPoint(this, e.getPoint(), view);
 		
-		next = handleMenu(mouseClick);
+		setNext(handleMenu(mouseClick));
 		
 	}
 
@@ -21,7 +21,7 @@ public class MenuPane extends JPanel {
 	private final FontMetrics fm;
 
 	// the items in the menu
-	private final String[] menuItems = { "Start New Game", "Create Custom Game", "Load Game" };
+	private final String[] menuItems = { "Start New Game", "Play vs Computer", "Create Custom Game", "Load Game" };
 
 	private final Rectangle inputMap[];
 
@@ -56,6 +56,8 @@ public class MenuPane extends JPanel {
 
 	@Override
     protected void paintComponent(Graphics g)  {
+		// clear the background first, as only part of the window may be repainted
+		super.paintComponent(g);
 		Graphics2D g2d = (Graphics2D) g;
 
 		// highlight menu option if mouse is over it
@@ -80,19 +82,24 @@ public class MenuPane extends JPanel {
 		return false;
 	}
 
-	// sets highlight to a menu item if it contains the specified point
+	// sets highlight to a menu item if it contains the specified point, repainting the menu items whose highlight changed
 	public void highlightMenu(Point p) {
 
+		int newHighlight = -1;
 		for (int i = 0; i < inputMap.length; i++) {
-			if (inputMap[i] == null)
-				continue;
-			if (inputMap[i].contains(p)) {
-				highlight = i;
+			if (inputMap[i] != null && inputMap[i].contains(p)) {
+				newHighlight = i;
 				break;
 			}
-
-			highlight = -1;
 		}
 
+		if (newHighlight == highlight)
+			return;
+		if (highlight != -1)
+			repaint(inputMap[highlight]);
+		if (newHighlight != -1)
+			repaint(inputMap[newHighlight]);
+		highlight = newHighlight;
+
 	}
 }
@@ -0,0 +1,376 @@
+package morris;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+// Computer opponent for the placing phase, where the branching is widest:  a Monte Carlo tree search (UCT)
+// Each iteration walks down the tree picking the child with the best upper confidence bound, adds the children of
+// the leaf it reaches, plays the game out with lightly guided random moves, and adds the result to every node on
+// the way back up.  The move played is the root child visited most.
+//
+// The tree lives in a fixed pool of primitive arrays, so its memory is bounded and nothing is allocated per node;
+// once the pool is full the tree stops growing and the iterations keep refining it.  Several threads can search
+// one tree:  the tree itself is only touched under a lock, and while a thread plays out from a leaf the nodes on
+// its path carry a "virtual loss" so the other threads spread out to other parts of the tree.
+public class MonteCarlo {
+
+	// default size of the node pool
+	public static final int DEFAULT_NODES = 1 << 20;
+
+	// exploration constant of the upper confidence bound
+	private static final double EXPLORATION = 1.4;
+
+	// visits (all lost) added to each node on a path while its playout runs
+	private static final int VIRTUAL_LOSS = 1;
+
+	// longest playout, in plies:  a game still going after this is scored as a draw
+	private static final int MAX_PLAYOUT = 200;
+
+	// longest path from the root
+	private static final int MAX_PATH = 256;
+
+	// node pool:  the move leading to each node and the side that made it, the node's children (stored one after
+	// another from firstChild, -1 until the node is expanded), the visits (virtual losses included) and total result
+	// for the mover, and the playouts still running through the node (whose virtual losses are in its visits)
+	private final int[] moves;
+	private final byte[] movers;
+	private final int[] firstChild;
+	private final byte[] childCount;
+	private final int[] visits;
+	private final float[] results;
+	private final int[] pending;
+
+	// number of nodes in use
+	private int size;
+
+	// guards the tree
+	private final Object lock = new Object();
+
+	// tablebase used to end playouts in the moving phase (null if there is none)
+	private Tablebase tablebase;
+
+	// search threads (the caller's thread is one of them)
+	private int threads = 1;
+	private ExecutorService pool;
+
+	// seed for the playout move choices
+	private long seed = System.nanoTime();
+
+	// the position being searched
+	private Position root;
+
+	// time at which the current search must stop
+	private long deadline;
+
+	// set to stop the current search (can be set from another thread)
+	private volatile boolean stopped;
+
+	// results of the last search
+	private int bestMove;
+	private long playouts;
+	private long elapsed;
+
+	// creates a search with the default node pool
+	public MonteCarlo() {
+		this(DEFAULT_NODES);
+	}
+
+	// creates a search whose tree holds at most maxNodes nodes
+	public MonteCarlo(int maxNodes) {
+		moves = new int[maxNodes];
+		movers = new byte[maxNodes];
+		firstChild = new int[maxNodes];
+		childCount = new byte[maxNodes];
+		visits = new int[maxNodes];
+		results = new float[maxNodes];
+		pending = new int[maxNodes];
+	}
+
+	// sets the number of threads used by each search
+	public void setThreads(int threads) {
+		if (pool != null)
+			pool.shutdown();
+
+		this.threads = Math.max(1, threads);
+		pool = this.threads == 1 ? null : Executors.newFixedThreadPool(this.threads - 1, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "playout");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	// returns the number of threads used by each search
+	public int getThreads() {
+		return threads;
+	}
+
+	// sets the tablebase used to score playouts once they reach the moving phase (null for none)
+	public void setTablebase(Tablebase tablebase) {
+		this.tablebase = tablebase;
+	}
+
+	// sets the seed for the random playouts (searches with one thread and the same seed play the same)
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	// searches the position for up to timeMillis milliseconds and returns the best move found (Move.NONE if there
+	// are no moves);  the position is not changed
+	public int search(Position position, long timeMillis) {
+
+		long start = System.currentTimeMillis();
+		root = new Position(position);
+		deadline = timeMillis >= Long.MAX_VALUE - start ? Long.MAX_VALUE : start + timeMillis;
+		stopped = false;
+		playouts = 0;
+
+		size = 1;
+		moves[0] = Move.NONE;
+		movers[0] = (byte) Position.opponent(position.getTurn());
+		firstChild[0] = -1;
+		visits[0] = 0;
+		results[0] = 0;
+		pending[0] = 0;
+
+		int[] rootMoves = new int[Move.MAX_MOVES];
+		int count = root.generateMoves(rootMoves);
+
+		// with a single move there is nothing to think about
+		if (count <= 1) {
+			bestMove = count == 1 ? rootMoves[0] : Move.NONE;
+			elapsed = System.currentTimeMillis() - start;
+			return bestMove;
+		}
+
+		Future<?>[] running = new Future<?>[threads - 1];
+		for (int i = 0; i < running.length; i++) {
+			final long workerSeed = seed + i + 1;
+			running[i] = pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					work(workerSeed);
+				}
+			});
+		}
+
+		work(seed);
+
+		for (int i = 0; i < running.length; i++) {
+			try {
+				running[i].get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+
+		// the most visited move is the most trusted
+		int best = firstChild[0];
+		for (int c = firstChild[0]; c < firstChild[0] + childCount[0]; c++)
+			if (visits[c] > visits[best])
+				best = c;
+		bestMove = moves[best];
+
+		elapsed = System.currentTimeMillis() - start;
+		return bestMove;
+	}
+
+	// stops a running search as soon as possible
+	public void stop() {
+		stopped = true;
+	}
+
+	// runs iterations until the search is stopped or out of time
+	private void work(long seed) {
+		Random random = new Random(seed);
+		Position position = new Position(root);
+		int[] path = new int[MAX_PATH];
+		int[] buffer = new int[Move.MAX_MOVES];
+
+		while (!stopped) {
+			position.copyFrom(root);
+
+			int length;
+			synchronized (lock) {
+				length = select(position, path, buffer);
+			}
+
+			float result = playout(position, random, buffer);
+
+			synchronized (lock) {
+				update(path, length, result);
+				playouts++;
+				if (playouts % 256 == 0 && System.currentTimeMillis() >= deadline)
+					stopped = true;
+			}
+		}
+	}
+
+	// walks from the root to a leaf, making the moves on position and recording the nodes in path (the tree lock
+	// must be held):  expands the leaf if there is room, and returns the length of the path
+	private int select(Position position, int[] path, int[] buffer) {
+		int node = 0;
+		int length = 0;
+		path[length++] = node;
+		addVirtualLoss(node);
+
+		while (true) {
+
+			// expand a leaf that has had a playout finish before (or the root), if the pool has room:  the virtual
+			// losses of playouts still running, from this thread or others, are not visits
+			if (firstChild[node] == -1) {
+				if (node != 0 && visits[node] - pending[node] * VIRTUAL_LOSS == 0)
+					return length;
+				if (!expand(node, position, buffer))
+					return length;
+			}
+
+			if (childCount[node] == 0 || length == MAX_PATH)
+				return length;
+
+			node = bestChild(node);
+			position.makeMove(moves[node]);
+			path[length++] = node;
+			addVirtualLoss(node);
+		}
+	}
+
+	// marks a playout as running through node (the tree lock must be held)
+	private void addVirtualLoss(int node) {
+		visits[node] += VIRTUAL_LOSS;
+		pending[node]++;
+	}
+
+	// adds the children of node (the tree lock must be held):  returns false if the pool is full
+	private boolean expand(int node, Position position, int[] buffer) {
+		int count = position.generateMoves(buffer);
+		if (size + count > moves.length)
+			return false;
+
+		firstChild[node] = size;
+		childCount[node] = (byte) count;
+		byte mover = (byte) position.getTurn();
+		for (int i = 0; i < count; i++) {
+			moves[size] = buffer[i];
+			movers[size] = mover;
+			firstChild[size] = -1;
+			childCount[size] = 0;
+			visits[size] = 0;
+			results[size] = 0;
+			pending[size] = 0;
+			size++;
+		}
+		return true;
+	}
+
+	// returns the child of node with the best upper confidence bound (unvisited children first)
+	private int bestChild(int node) {
+		double logVisits = Math.log(Math.max(1, visits[node]));
+		int best = -1;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int c = firstChild[node]; c < firstChild[node] + childCount[node]; c++) {
+			if (visits[c] == 0)
+				return c;
+			double value = results[c] / visits[c] + EXPLORATION * Math.sqrt(logVisits / visits[c]);
+			if (value > bestValue) {
+				bestValue = value;
+				best = c;
+			}
+		}
+		return best;
+	}
+
+	// adds a playout result (for blue:  1 a win, 0 a loss, 0.5 a draw) to the nodes on path, replacing their virtual
+	// losses with the real visit (the tree lock must be held)
+	private void update(int[] path, int length, float result) {
+		for (int i = 0; i < length; i++) {
+			int node = path[i];
+			visits[node] += 1 - VIRTUAL_LOSS;
+			pending[node]--;
+			results[node] += movers[node] == Position.BLUE ? result : 1 - result;
+		}
+	}
+
+	// plays the game out from position and returns the result for blue
+	// the moves are random, except that a move forming a mill is always taken and captures are made first
+	private float playout(Position position, Random random, int[] buffer) {
+
+		for (int ply = 0; ply < MAX_PLAYOUT; ply++) {
+
+			if (position.getWinner() != Position.NONE)
+				return position.getWinner() == Position.BLUE ? 1 : 0;
+
+			// the moving phase is solved if there is a tablebase
+			if (tablebase != null && Tablebase.covers(position)) {
+				int probe = tablebase.probe(position);
+				if (Tablebase.result(probe) == Tablebase.DRAW)
+					return 0.5f;
+				boolean won = Tablebase.result(probe) == Tablebase.WIN;
+				return won == (position.getTurn() == Position.BLUE) ? 1 : 0;
+			}
+
+			int count = position.generateMoves(buffer);
+			if (count == 0)
+				return position.getTurn() == Position.BLUE ? 0 : 1;
+
+			// take a move that forms a mill if there is one
+			int own = position.getPieces(position.getTurn());
+			int start = random.nextInt(count);
+			int move = buffer[start];
+			for (int i = 0; i < count && Move.type(move) != Move.CAPTURE; i++) {
+				int candidate = buffer[(start + i) % count];
+				int to = Move.to(candidate);
+				int after = Move.type(candidate) == Move.MOVE ? own & ~(1 << Move.from(candidate)) : own;
+				if (Topology.formsMill(to, after | 1 << to)) {
+					move = candidate;
+					break;
+				}
+			}
+
+			position.makeMove(move);
+		}
+
+		return 0.5f;
+	}
+
+	// returns the best move found by the last search
+	public int getBestMove() {
+		return bestMove;
+	}
+
+	// returns the number of playouts made by the last search (by all threads)
+	public long getPlayouts() {
+		return playouts;
+	}
+
+	// returns the number of playouts per second of the last search
+	public long getPlayoutsPerSecond() {
+		return playouts * 1000 / Math.max(1, elapsed);
+	}
+
+	// returns the number of nodes in the tree of the last search
+	public int getTreeSize() {
+		return size;
+	}
+
+	// returns the number of nodes the tree can hold
+	public int getCapacity() {
+		return moves.length;
+	}
+
+	// returns the time taken by the last search, in milliseconds
+	public long getElapsed() {
+		return elapsed;
+	}
+
+	// returns a one line summary of the last search
+	public String getReport() {
+		return "move " + Move.toString(bestMove) + "  playouts " + playouts + "  tree " + size + "/" + getCapacity() + " nodes  time " + elapsed + " ms  playouts/s " + getPlayoutsPerSecond();
+	}
+
+}
@@ -5,11 +5,13 @@ public class Morris {
 
 	private Environment env;
 
-	// Game loop starts by creating a main menu window
+	// Game loop starts by creating a main menu window (or by going back to a game left in progress)
 	// and switches to different game windows as necessary
 	public Morris() {
 
-		env = new Menu();
+		env = Game.recover();
+		if (env == null)
+			env = new Menu();
 
 		while (true) {
 			Environment next = env.run();
@@ -0,0 +1,68 @@
+package morris;
+
+// Moves are encoded as plain ints so they can be generated into and read back from int[] buffers
+// bits 0-3:  the point a piece is placed on, moved to, or captured from
+// bits 4-7:  the point a piece is moved from (moving phase only)
+// bits 8-9:  the kind of move (PLACE, MOVE or CAPTURE)
+public final class Move {
+
+	// the kinds of move
+	public static final int PLACE = 0;
+	public static final int MOVE = 1;
+	public static final int CAPTURE = 2;
+
+	// an encoding that is never a legal move
+	public static final int NONE = -1;
+
+	// the most moves that any position can have (a buffer of this size always fits generateMoves)
+	public static final int MAX_MOVES = 32;
+
+	private Move() {
+	}
+
+	// returns a move that places a piece from the tray on point to
+	public static int place(int to) {
+		return PLACE << 8 | to;
+	}
+
+	// returns a move that moves the piece on point from to point to
+	public static int move(int from, int to) {
+		return MOVE << 8 | from << 4 | to;
+	}
+
+	// returns a move that captures the opponents piece on point p
+	public static int capture(int p) {
+		return CAPTURE << 8 | p;
+	}
+
+	// returns the kind of move (PLACE, MOVE or CAPTURE)
+	public static int type(int move) {
+		return move >>> 8;
+	}
+
+	// returns the point a piece is moved from (only valid for MOVE)
+	public static int from(int move) {
+		return move >>> 4 & 0xf;
+	}
+
+	// returns the point a piece is placed on, moved to, or captured from
+	public static int to(int move) {
+		return move & 0xf;
+	}
+
+	// returns a readable form of the move using board coordinates, e.g. "(0,3)-(2,3)"
+	public static String toString(int move) {
+		if (move == NONE)
+			return "none";
+		String to = "(" + Topology.xOf(to(move)) + "," + Topology.yOf(to(move)) + ")";
+		switch (type(move)) {
+		case MOVE:
+			return "(" + Topology.xOf(from(move)) + "," + Topology.yOf(from(move)) + ")-" + to;
+		case CAPTURE:
+			return "x" + to;
+		default:
+			return to;
+		}
+	}
+
+}
@@ -0,0 +1,187 @@
+package morris;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+// Append-only journal of one game, so that a game in progress can be recovered if the program stops
+// The journal starts with the game as it was when the journal was created (in the save format of GameModel),
+// followed by a two-byte record for every move, undo and redo made since (see GameModel).  Records are gathered in
+// memory and written, and forced to the disk, in batches and whenever the turn passes (see GameModel), so a turn
+// costs a couple of bytes and one write however big the game, and a crash loses at most the turn being played.
+// File layout (big-endian):  magic "MORRISJN", version, the side played by the computer (Position.NONE for none),
+// the size of the start of the game, the start of the game, then the records.
+public class MoveJournal {
+
+	// directory the journals are kept in (in the working directory)
+	public static final File DIRECTORY = new File("journal");
+
+	// file header (the magic number spells "MORRISJN")
+	private static final long MAGIC = 0x4d4f525249534a4eL;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 14;
+
+	// records that are not moves
+	public static final int UNDO = 0xffff;
+	public static final int REDO = 0xfffe;
+
+	// number of records written at once
+	private static final int BATCH = 8;
+
+	// largest journal that is read back
+	private static final int MAX_SIZE = 1 << 20;
+
+	private final File file;
+	private final RandomAccessFile out;
+	private final FileChannel channel;
+
+	// records not written yet
+	private final ByteBuffer pending = ByteBuffer.allocate(BATCH * 2);
+
+	// what the journal held when it was opened
+	private final int computerSide;
+	private final ByteBuffer start;
+	private final int[] records;
+
+	private MoveJournal(File file, int computerSide, ByteBuffer start, int[] records) throws IOException {
+		this.file = file;
+		this.computerSide = computerSide;
+		this.start = start;
+		this.records = records;
+		out = new RandomAccessFile(file, "rw");
+		channel = out.getChannel();
+		channel.position(channel.size());
+	}
+
+	// starts a new journal in DIRECTORY for a game that starts as start (in the save format), with the computer
+	// playing computerSide
+	public static MoveJournal create(int computerSide, ByteBuffer start) throws IOException {
+		if (!DIRECTORY.isDirectory() && !DIRECTORY.mkdirs())
+			throw new IOException("cannot create " + DIRECTORY);
+		File file = File.createTempFile("game-", ".journal", DIRECTORY);
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + start.remaining());
+		header.putLong(MAGIC).putInt(VERSION).put((byte) computerSide).put((byte) start.remaining());
+		header.put(start.duplicate());
+		header.flip();
+
+		MoveJournal journal = new MoveJournal(file, computerSide, start, new int[0]);
+		journal.write(header);
+		return journal;
+	}
+
+	// opens a journal to recover its game and carry on adding to it
+	public static MoveJournal open(File file) throws IOException {
+		ByteBuffer buffer;
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() < HEADER_SIZE || channel.size() > MAX_SIZE)
+				throw new IOException(file + " is not a journal");
+			buffer = ByteBuffer.allocate((int) channel.size());
+			while (buffer.hasRemaining() && channel.read(buffer) >= 0)
+				;
+			buffer.flip();
+		} finally {
+			in.close();
+		}
+
+		if (buffer.getLong() != MAGIC)
+			throw new IOException(file + " is not a journal");
+		int version = buffer.getInt();
+		if (version != VERSION)
+			throw new IOException(file + " has journal version " + version + ", expected " + VERSION);
+		int computerSide = buffer.get();
+		int startSize = buffer.get();
+		if (buffer.remaining() < startSize)
+			throw new IOException(file + " is truncated");
+
+		ByteBuffer start = buffer.slice();
+		start.limit(startSize);
+		buffer.position(buffer.position() + startSize);
+
+		// a record cut short by a crash is dropped
+		int[] records = new int[buffer.remaining() / 2];
+		for (int i = 0; i < records.length; i++)
+			records[i] = buffer.getShort() & 0xffff;
+
+		return new MoveJournal(file, computerSide, start, records);
+	}
+
+	// returns the journals in DIRECTORY, newest first
+	public static File[] list() {
+		File[] files = DIRECTORY.listFiles(new FileFilter() {
+			@Override
+			public boolean accept(File file) {
+				return file.getName().endsWith(".journal");
+			}
+		});
+		if (files == null)
+			return new File[0];
+		Arrays.sort(files, new Comparator<File>() {
+			@Override
+			public int compare(File a, File b) {
+				return Long.compare(b.lastModified(), a.lastModified());
+			}
+		});
+		return files;
+	}
+
+	// returns the side played by the computer in the journal's game (Position.NONE if two people are playing)
+	public int getComputerSide() {
+		return computerSide;
+	}
+
+	// returns the game as it was when the journal was started, in the save format
+	public ByteBuffer getStart() {
+		return start.duplicate();
+	}
+
+	// returns the records the journal held when it was opened
+	public int[] getRecords() {
+		return records;
+	}
+
+	// adds a record, writing the batch once it is full
+	public void append(int record) throws IOException {
+		pending.putShort((short) record);
+		if (!pending.hasRemaining())
+			flush();
+	}
+
+	// writes the records not written yet and forces them to the disk
+	public void flush() throws IOException {
+		pending.flip();
+		write(pending);
+		pending.clear();
+		channel.force(false);
+	}
+
+	// writes the records not written yet and closes the journal (it is kept for recovery)
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	// closes the journal and deletes it, once its game no longer needs recovering
+	public void delete() throws IOException {
+		out.close();
+		if (!file.delete())
+			throw new IOException("cannot delete " + file);
+	}
+
+	// writes all of buffer (from its position) to the file
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+}
@@ -0,0 +1,154 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Moves to play in the placing phase without searching, with how well they did in self-play (see OpeningBookBuilder)
+//
+// The book is a file of fixed-size records sorted by position:  the canonical hash of a position (see
+// Position.getCanonicalHash), a move in the canonical frame, the number of games the move was played in, and the
+// points the side making it scored (2 a win, 1 a draw).  A file is opened by mapping it into memory and probed by a
+// binary search, so opening takes no time whatever the size of the book.
+// File layout (big-endian):  magic "MORRISBK", version, number of records, then the records.
+public class OpeningBook {
+
+	// file the game looks for (in the working directory)
+	public static final String DEFAULT_FILE = "morris.book";
+
+	// file header (the magic number spells "MORRISBK")
+	private static final long MAGIC = 0x4d4f52524953424bL;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 16;
+
+	// record layout:  hash, move, games, points
+	static final int RECORD_SIZE = 20;
+
+	// the records
+	private final ByteBuffer records;
+	private final int count;
+
+	private OpeningBook(ByteBuffer records, int count) {
+		this.records = records;
+		this.count = count;
+	}
+
+	// opens a book by mapping it into memory
+	public static OpeningBook open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC)
+				throw new IOException(file + " is not an opening book");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has book version " + version + ", expected " + VERSION);
+			int count = header.getInt();
+			if (channel.size() != HEADER_SIZE + (long) count * RECORD_SIZE)
+				throw new IOException(file + " is truncated");
+
+			// the mapping stays valid after the file is closed
+			return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, (long) count * RECORD_SIZE), count);
+		} finally {
+			in.close();
+		}
+	}
+
+	// writes sorted records (RECORD_SIZE bytes each, from position 0 to the limit of records) as a book file
+	static void write(File file, ByteBuffer records) throws IOException {
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+		header.putLong(MAGIC).putInt(VERSION).putInt(records.limit() / RECORD_SIZE);
+		header.flip();
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = out.getChannel();
+			channel.truncate(0);
+			while (header.hasRemaining())
+				channel.write(header);
+			records.rewind();
+			while (records.hasRemaining())
+				channel.write(records);
+		} finally {
+			out.close();
+		}
+	}
+
+	// returns the number of records in the book
+	public int size() {
+		return count;
+	}
+
+	// returns the best scoring book move in position (in the position's own frame), Move.NONE if it is not in book
+	// or if even its best move scored less than a draw on average (the position is then better searched)
+	public int probe(Position position) {
+		int frame = position.getCanonicalTransform();
+		long key = position.getHash(frame);
+
+		int bestMove = Move.NONE;
+		long bestPoints = 0;
+		long bestGames = 1;
+		for (int i = first(key); i < count && hash(i) == key; i++) {
+			long games = games(i);
+			long points = points(i);
+			// compare points / games without dividing, preferring the move played more often on a tie
+			long difference = points * bestGames - bestPoints * games;
+			if (bestMove == Move.NONE || difference > 0 || difference == 0 && games > bestGames) {
+				bestMove = move(i);
+				bestPoints = points;
+				bestGames = games;
+			}
+		}
+
+		if (bestPoints < bestGames)
+			return Move.NONE;
+		return Symmetry.move(Symmetry.inverse(frame), bestMove);
+	}
+
+	// returns the number of games in which the position was reached (0 if it is not in book)
+	public long getGames(Position position) {
+		long key = position.getCanonicalHash();
+		long games = 0;
+		for (int i = first(key); i < count && hash(i) == key; i++)
+			games += games(i);
+		return games;
+	}
+
+	// returns the index of the first record for key (or where it would be)
+	private int first(long key) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (hash(middle) < key)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	// returns the position hash of record i
+	private long hash(int i) {
+		return records.getLong(i * RECORD_SIZE);
+	}
+
+	// returns the move (in the canonical frame) of record i
+	private int move(int i) {
+		return records.getInt(i * RECORD_SIZE + 8);
+	}
+
+	// returns the number of games of record i
+	private int games(int i) {
+		return records.getInt(i * RECORD_SIZE + 12);
+	}
+
+	// returns the points scored by the move of record i
+	private int points(int i) {
+		return records.getInt(i * RECORD_SIZE + 16);
+	}
+
+}
@@ -0,0 +1,185 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Command line tool that builds an OpeningBook from self-play
+// The engine plays itself at a fixed depth on every core, each game starting with a few random moves from its own
+// seed.  Every move of the placing phase is recorded against the canonical form of the position it was played in,
+// with the game's result for the side that played it.  Games are scored by the tablebase as soon as they reach the
+// moving phase, if there is a tablebase file.  Moves played in fewer than the minimum number of games are left out.
+//
+// usage:  OpeningBookBuilder [games] [depth] [min games] [file]
+//		games defaults to 2000, depth to 6, min games to 2 and file to OpeningBook.DEFAULT_FILE
+public class OpeningBookBuilder {
+
+	// longest random start of a game, in plies
+	private static final int RANDOM_PLIES = 4;
+
+	// longest game, in plies:  a game still going after this is a draw
+	private static final int MAX_PLIES = 300;
+
+	// statistics for each canonical position hash and canonical move:  { games, points }
+	private final Map<Long, Map<Integer, int[]>> statistics = new HashMap<Long, Map<Integer, int[]>>();
+
+	private final int depth;
+	private final Tablebase tablebase;
+
+	private OpeningBookBuilder(int depth, Tablebase tablebase) {
+		this.depth = depth;
+		this.tablebase = tablebase;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		final int games = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		int depth = args.length > 1 ? Integer.parseInt(args[1]) : 6;
+		int minGames = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+		File file = new File(args.length > 3 ? args[3] : OpeningBook.DEFAULT_FILE);
+
+		File tablebaseFile = new File(Tablebase.DEFAULT_FILE);
+		Tablebase tablebase = tablebaseFile.exists() ? Tablebase.open(tablebaseFile) : null;
+
+		final OpeningBookBuilder builder = new OpeningBookBuilder(depth, tablebase);
+		int threads = Runtime.getRuntime().availableProcessors();
+		System.out.println("playing " + games + " games at depth " + depth + " on " + threads + " threads" + (tablebase != null ? ", with tablebase" : ""));
+
+		long start = System.currentTimeMillis();
+		final AtomicInteger next = new AtomicInteger();
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		List<Future<?>> workers = new ArrayList<Future<?>>();
+		for (int i = 0; i < threads; i++) {
+			workers.add(pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					Engine engine = new Engine();
+					for (int game = next.getAndIncrement(); game < games; game = next.getAndIncrement())
+						builder.play(engine, game);
+				}
+			}));
+		}
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		pool.shutdown();
+
+		int records = builder.write(file, minGames);
+		System.out.println(records + " moves written to " + file + " (" + builder.statistics.size() + " positions seen) in "
+				+ (System.currentTimeMillis() - start) + " ms");
+	}
+
+	// plays one game and records its placing-phase moves
+	private void play(Engine engine, int game) {
+
+		Random random = new Random(game);
+		Position position = new Position(new GameModel(false, game).getPosition());
+		engine.getTable().clear();
+		engine.setTablebase(tablebase);
+
+		// the canonical hash, canonical move and mover of each placing-phase move
+		long[] hashes = new long[MAX_PLIES];
+		int[] moves = new int[MAX_PLIES];
+		int[] movers = new int[MAX_PLIES];
+		int recorded = 0;
+
+		int[] buffer = new int[Move.MAX_MOVES];
+		int randomPlies = random.nextInt(RANDOM_PLIES + 1);
+		int result = Position.NONE;
+		boolean decided = false;
+
+		for (int ply = 0; ply < MAX_PLIES && position.getWinner() == Position.NONE; ply++) {
+
+			// once in the moving phase the tablebase knows the result
+			if (tablebase != null && Tablebase.covers(position)) {
+				int probe = tablebase.probe(position);
+				if (Tablebase.result(probe) != Tablebase.DRAW)
+					result = Tablebase.result(probe) == Tablebase.WIN ? position.getTurn() : Position.opponent(position.getTurn());
+				decided = true;
+				break;
+			}
+
+			int move;
+			if (ply < randomPlies) {
+				int count = position.generateMoves(buffer);
+				if (count == 0)
+					break;
+				move = buffer[random.nextInt(count)];
+			} else
+				move = engine.searchDepth(new Position(position), depth);
+			if (move == Move.NONE)
+				break;
+
+			if (position.isPlacingPhase()) {
+				int frame = position.getCanonicalTransform();
+				hashes[recorded] = position.getHash(frame);
+				moves[recorded] = Symmetry.move(frame, move);
+				movers[recorded] = position.getTurn();
+				recorded++;
+			}
+
+			position.makeMove(move);
+		}
+
+		if (!decided)
+			result = position.getWinner();
+
+		synchronized (statistics) {
+			for (int i = 0; i < recorded; i++) {
+				Map<Integer, int[]> positionMoves = statistics.get(hashes[i]);
+				if (positionMoves == null) {
+					positionMoves = new HashMap<Integer, int[]>();
+					statistics.put(hashes[i], positionMoves);
+				}
+				int[] counts = positionMoves.get(moves[i]);
+				if (counts == null) {
+					counts = new int[2];
+					positionMoves.put(moves[i], counts);
+				}
+				counts[0]++;
+				counts[1] += result == Position.NONE ? 1 : result == movers[i] ? 2 : 0;
+			}
+		}
+	}
+
+	// writes the moves played in at least minGames games, sorted for the book, and returns how many there are
+	private int write(File file, int minGames) throws IOException {
+
+		List<long[]> records = new ArrayList<long[]>();
+		for (Map.Entry<Long, Map<Integer, int[]>> position : statistics.entrySet())
+			for (Map.Entry<Integer, int[]> move : position.getValue().entrySet())
+				if (move.getValue()[0] >= minGames)
+					records.add(new long[] { position.getKey(), move.getKey(), move.getValue()[0], move.getValue()[1] });
+
+		Collections.sort(records, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				return a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]);
+			}
+		});
+
+		ByteBuffer buffer = ByteBuffer.allocate(records.size() * OpeningBook.RECORD_SIZE);
+		for (long[] record : records)
+			buffer.putLong(record[0]).putInt((int) record[1]).putInt((int) record[2]).putInt((int) record[3]);
+		buffer.flip();
+
+		OpeningBook.write(file, buffer);
+		return records.size();
+	}
+
+}
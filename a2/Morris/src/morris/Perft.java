@@ -0,0 +1,144 @@
+package morris;
+
+import java.io.File;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+// Command line tool that counts every legal move sequence (every path through the game tree) to a fixed depth
+// The counts are broken down by the kind of the last move, plus the sequences that end the game, so any change to
+// the rules code that changes behaviour changes the numbers.  The time taken doubles as a benchmark of move
+// generation and make/unmake.  A capture counts as a move of its own (one ply), as it does in Position.
+//
+// usage:  Perft [depth] [mode] [save file]
+//		depth defaults to 6, mode is "single" (one thread, the default) or "parallel" (a fork-join pool that
+//		splits the work at the root), and the position defaults to the opening position (blue to move)
+public class Perft {
+
+	// indexes of the counts:  sequences ending in each kind of move (by Move type), and sequences ending the game
+	public static final int PLACEMENTS = Move.PLACE;
+	public static final int MOVES = Move.MOVE;
+	public static final int CAPTURES = Move.CAPTURE;
+	public static final int GAMES_ENDED = 3;
+	private static final int COUNTS = 4;
+
+	// the pool shared by every parallel count (its worker threads are daemons, so it never needs shutting down)
+	private static final ForkJoinPool POOL = new ForkJoinPool();
+
+	private Perft() {
+	}
+
+	// counts the sequences from position to depth on this thread, returning the counts indexed as above
+	// (the position is restored before returning)
+	public static long[] count(Position position, int depth) {
+		long[] counts = new long[COUNTS];
+		count(position, depth, new int[depth + 1][Move.MAX_MOVES], counts);
+		return counts;
+	}
+
+	// counts the sequences using a fork-join pool:  each move at the root is counted by its own task
+	public static long[] countParallel(Position position, int depth) {
+		if (depth <= 1)
+			return count(position, depth);
+		return POOL.invoke(new RootTask(position, depth));
+	}
+
+	// returns the total number of sequences in counts
+	public static long total(long[] counts) {
+		return counts[PLACEMENTS] + counts[MOVES] + counts[CAPTURES];
+	}
+
+	// adds the sequences from the position to depth to counts
+	private static void count(Position position, int depth, int[][] moveStack, long[] counts) {
+		if (depth == 0)
+			return;
+
+		int[] moves = moveStack[depth];
+		int count = position.generateMoves(moves);
+
+		for (int i = 0; i < count; i++) {
+			int move = moves[i];
+			position.makeMove(move);
+			if (depth == 1) {
+				counts[Move.type(move)]++;
+				if (position.getWinner() != Position.NONE)
+					counts[GAMES_ENDED]++;
+			} else
+				count(position, depth - 1, moveStack, counts);
+			position.unmakeMove(move);
+		}
+	}
+
+	// splits the count at the root, one subtask per move
+	private static class RootTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Position position;
+		private final int depth;
+
+		RootTask(Position position, int depth) {
+			this.position = position;
+			this.depth = depth;
+		}
+
+		@Override
+		protected long[] compute() {
+			int[] moves = new int[Move.MAX_MOVES];
+			int count = position.generateMoves(moves);
+
+			MoveTask[] tasks = new MoveTask[count];
+			for (int i = 0; i < count; i++) {
+				tasks[i] = new MoveTask(position, moves[i], depth - 1);
+				tasks[i].fork();
+			}
+
+			long[] counts = new long[COUNTS];
+			for (int i = 0; i < count; i++) {
+				long[] sub = tasks[i].join();
+				for (int c = 0; c < COUNTS; c++)
+					counts[c] += sub[c];
+			}
+			return counts;
+		}
+	}
+
+	// counts the sequences after one root move, on a copy of the position
+	private static class MoveTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final Position position;
+		private final int depth;
+
+		MoveTask(Position root, int move, int depth) {
+			position = new Position(root);
+			position.makeMove(move);
+			this.depth = depth;
+		}
+
+		@Override
+		protected long[] compute() {
+			return count(position, depth);
+		}
+	}
+
+	public static void main(String[] args) {
+
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 6;
+		boolean parallel = args.length > 1 && args[1].equals("parallel");
+		Position position = args.length > 2 ? new GameModel(new File(args[2])).getPosition() : new Position(Position.BLUE);
+
+		System.out.println("perft to depth " + depth + (parallel ? " (fork-join, " + Runtime.getRuntime().availableProcessors() + " cores)" : " (single thread)"));
+		System.out.println(String.format("%6s %16s %14s %14s %14s %12s %10s %12s", "depth", "sequences", "placements", "moves", "captures", "game ends", "time (ms)", "nps"));
+
+		for (int d = 1; d <= depth; d++) {
+			long start = System.nanoTime();
+			long[] counts = parallel ? countParallel(new Position(position), d) : count(new Position(position), d);
+			long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+
+			System.out.println(String.format("%6d %16d %14d %14d %14d %12d %10d %12d", d, total(counts), counts[PLACEMENTS], counts[MOVES],
+					counts[CAPTURES], counts[GAMES_ENDED], elapsed, total(counts) * 1000 / elapsed));
+		}
+	}
+
+}
@@ -0,0 +1,16 @@
+package morris;
+
+// Something that chooses moves for one side of a game, so that different kinds of computer player can be matched
+// against each other without any windows (see Tournament)
+public interface Player {
+
+	// returns a short name for reports, e.g. "alphabeta:100"
+	String getName();
+
+	// starts a new game:  seed makes any random choices the player makes repeatable
+	void newGame(long seed);
+
+	// returns the move to play in position (Move.NONE if there are no moves);  the position must not be changed
+	int chooseMove(Position position);
+
+}
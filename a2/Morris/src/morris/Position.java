@@ -0,0 +1,554 @@
+package morris;
+
+// This class contains the core position of the game
+// Each side's pieces are stored as a bit mask over the 16 real board points,
+// so board queries are a few mask operations instead of walks over the 7x7 grid
+public class Position {
+
+	// side indexes used throughout the position (and by anything built on it)
+	public static final int BLUE = 0;
+	public static final int RED = 1;
+	public static final int NONE = -1;
+
+	// the number of pieces that each player starts with
+	public static final int PIECE_COUNT = 6;
+
+	// the number of pieces that cause a player to lose the game
+	public static final int LOSING_PIECE_COUNT = 2;
+
+	// piece masks indexed by side (BLUE or RED)
+	private final int[] pieces;
+
+	// number of pieces left in tray, indexed by side
+	private final int[] toPlace;
+
+	// kept up to date as pieces are added and removed, indexed by side:  the number of moves the side's pieces
+	// could make on the board, and the mask of the side's pieces that are part of a mill
+	private final int[] mobility = new int[2];
+	private final int[] millPieces = new int[2];
+
+	// also kept up to date, for the evaluation (see Weights):  the number of each side's complete mills, open twos
+	// (mill lines holding two of its pieces and an empty point), and empty points that would complete two of its
+	// mills at once
+	private final int[] mills = new int[2];
+	private final int[] openTwos = new int[2];
+	private final int[] doubleSetups = new int[2];
+
+	// the number of each side's open twos that each empty point would complete
+	private final byte[][] threats = new byte[2][Topology.POINTS];
+
+	// the side to move (BLUE or RED)
+	private int turn;
+
+	// true if the side to move has formed a mill and needs to delete an opponents piece
+	private boolean deletionRequired;
+
+	// the winner of the game (BLUE, RED, or NONE if the game is still going)
+	private int winner;
+
+	// Zobrist hash of the pieces, pieces left to place, turn and deletion flag (kept up to date on every change)
+	private long hash;
+
+	// hash of the pieces alone in each symmetric form of the position:  pieceHashes[t] is the hash of the pieces
+	// transformed by Symmetry transform t
+	private final long[] pieceHashes = new long[Symmetry.TRANSFORMS];
+
+	// creates an empty board with nothing left to place and blue to move
+	public Position() {
+		pieces = new int[2];
+		toPlace = new int[2];
+		turn = BLUE;
+		deletionRequired = false;
+		winner = NONE;
+		computeHash();
+	}
+
+	// creates the opening position:  an empty board, full trays, and turn to move first
+	public Position(int turn) {
+		this();
+		toPlace[BLUE] = toPlace[RED] = PIECE_COUNT;
+		this.turn = turn;
+		computeHash();
+	}
+
+	// creates a copy of another position
+	public Position(Position other) {
+		this();
+		copyFrom(other);
+	}
+
+	// overwrites this position with the state of another position
+	public void copyFrom(Position other) {
+		pieces[BLUE] = other.pieces[BLUE];
+		pieces[RED] = other.pieces[RED];
+		toPlace[BLUE] = other.toPlace[BLUE];
+		toPlace[RED] = other.toPlace[RED];
+		mobility[BLUE] = other.mobility[BLUE];
+		mobility[RED] = other.mobility[RED];
+		millPieces[BLUE] = other.millPieces[BLUE];
+		millPieces[RED] = other.millPieces[RED];
+		for (int side = BLUE; side <= RED; side++) {
+			mills[side] = other.mills[side];
+			openTwos[side] = other.openTwos[side];
+			doubleSetups[side] = other.doubleSetups[side];
+			System.arraycopy(other.threats[side], 0, threats[side], 0, Topology.POINTS);
+		}
+		turn = other.turn;
+		deletionRequired = other.deletionRequired;
+		winner = other.winner;
+		hash = other.hash;
+		System.arraycopy(other.pieceHashes, 0, pieceHashes, 0, Symmetry.TRANSFORMS);
+	}
+
+	// computes the hashes of the position from scratch
+	private void computeHash() {
+		hash = 0;
+		for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+			pieceHashes[t] = 0;
+		for (int side = BLUE; side <= RED; side++) {
+			int own = pieces[side];
+			while (own != 0) {
+				hashPiece(side, Integer.numberOfTrailingZeros(own));
+				own &= own - 1;
+			}
+			hash ^= Zobrist.toPlace(side, toPlace[side]);
+		}
+		if (turn == RED)
+			hash ^= Zobrist.turn();
+		if (deletionRequired)
+			hash ^= Zobrist.deletion();
+	}
+
+	// returns the 64-bit Zobrist hash of the position (equal positions have equal hashes)
+	public long getHash() {
+		return hash;
+	}
+
+	// returns the hash of the position transformed by Symmetry transform t
+	public long getHash(int t) {
+		return hash ^ pieceHashes[Symmetry.IDENTITY] ^ pieceHashes[t];
+	}
+
+	// returns the transform that maps the position to its canonical form for hashing:  the symmetric form whose
+	// pieces have the smallest hash (symmetric positions all have the same canonical form)
+	public int getCanonicalTransform() {
+		int best = Symmetry.IDENTITY;
+		for (int t = 1; t < Symmetry.TRANSFORMS; t++)
+			if (pieceHashes[t] < pieceHashes[best])
+				best = t;
+		return best;
+	}
+
+	// returns the hash of the canonical form of the position (symmetric positions have equal canonical hashes)
+	public long getCanonicalHash() {
+		return getHash(getCanonicalTransform());
+	}
+
+	// XORs the keys of a piece of side on point p into the hashes
+	private void hashPiece(int side, int p) {
+		hash ^= Zobrist.piece(side, p);
+		for (int t = 0; t < Symmetry.TRANSFORMS; t++)
+			pieceHashes[t] ^= Zobrist.piece(side, Symmetry.point(t, p));
+	}
+
+	// puts a piece of side on point p and updates the hashes, mobility, mill pieces and evaluation features
+	private void addPiece(int side, int p) {
+		// the pieces next to p can no longer move there, and the new piece can move to the empty points next to it
+		int neighbours = Topology.neighbourMask(p);
+		countLines(p, -1);
+		mobility[BLUE] -= Integer.bitCount(neighbours & pieces[BLUE]);
+		mobility[RED] -= Integer.bitCount(neighbours & pieces[RED]);
+		pieces[side] |= 1 << p;
+		mobility[side] += Integer.bitCount(neighbours & getEmpty());
+
+		// only mills through p can have been completed
+		for (int i = 0; i < Topology.millCountAt(p); i++) {
+			int mill = Topology.millAt(p, i);
+			if ((pieces[side] & mill) == mill)
+				millPieces[side] |= mill;
+		}
+
+		countLines(p, 1);
+		hashPiece(side, p);
+	}
+
+	// takes the piece of side off point p and updates the hashes, mobility, mill pieces and evaluation features
+	private void removePiece(int side, int p) {
+		int neighbours = Topology.neighbourMask(p);
+		countLines(p, -1);
+		pieces[side] &= ~(1 << p);
+		mobility[side] -= Integer.bitCount(neighbours & getEmpty());
+		mobility[BLUE] += Integer.bitCount(neighbours & pieces[BLUE]);
+		mobility[RED] += Integer.bitCount(neighbours & pieces[RED]);
+
+		// only mills through p can have been broken:  the other pieces on their lines stay in mills only if
+		// another mill through them is still complete
+		if ((millPieces[side] & 1 << p) != 0) {
+			int lines = Topology.millMaskAt(p);
+			millPieces[side] &= ~lines;
+			int others = lines & pieces[side];
+			while (others != 0) {
+				int q = Integer.numberOfTrailingZeros(others);
+				others &= others - 1;
+				for (int i = 0; i < Topology.millCountAt(q); i++) {
+					int mill = Topology.millAt(q, i);
+					if ((pieces[side] & mill) == mill)
+						millPieces[side] |= mill;
+				}
+			}
+		}
+
+		countLines(p, 1);
+		hashPiece(side, p);
+	}
+
+	// adds sign times what the mill lines through point p contribute to the line features (called with -1 before
+	// a change on p and 1 after it, as no other line can change)
+	private void countLines(int p, int sign) {
+		for (int i = 0; i < Topology.millCountAt(p); i++)
+			countLine(Topology.millAt(p, i), sign);
+	}
+
+	// adds sign times what mill line contributes to the mill, open two and double setup counts of both sides
+	private void countLine(int line, int sign) {
+		for (int side = BLUE; side <= RED; side++) {
+			int own = Integer.bitCount(pieces[side] & line);
+			if (own == 3)
+				mills[side] += sign;
+			else if (own == 2 && (pieces[side ^ 1] & line) == 0) {
+				openTwos[side] += sign;
+				int point = Integer.numberOfTrailingZeros(line & ~pieces[side]);
+				int before = threats[side][point];
+				threats[side][point] += sign;
+				// a point completing two mills is a double setup
+				if (before + sign == 2 || before == 2)
+					doubleSetups[side] += sign;
+			}
+		}
+	}
+
+	// changes the number of pieces side has left to place by delta and updates the hash
+	private void changeToPlace(int side, int delta) {
+		hash ^= Zobrist.toPlace(side, toPlace[side]);
+		toPlace[side] += delta;
+		hash ^= Zobrist.toPlace(side, toPlace[side]);
+	}
+
+	// switches the side to move and updates the hash
+	private void switchTurn() {
+		turn ^= 1;
+		hash ^= Zobrist.turn();
+	}
+
+	// flips the deletion required flag and updates the hash
+	private void flipDeletionRequired() {
+		deletionRequired = !deletionRequired;
+		hash ^= Zobrist.deletion();
+	}
+
+	// returns the opposing side
+	public static int opponent(int side) {
+		return side ^ 1;
+	}
+
+	// returns the mask of pieces belonging to side
+	public int getPieces(int side) {
+		return pieces[side];
+	}
+
+	// returns the mask of occupied points
+	public int getOccupied() {
+		return pieces[BLUE] | pieces[RED];
+	}
+
+	// returns the mask of unoccupied points
+	public int getEmpty() {
+		return ~(pieces[BLUE] | pieces[RED]) & Topology.ALL_POINTS;
+	}
+
+	// returns the side with a piece at point p, NONE if it is unoccupied
+	public int sideAt(int p) {
+		if ((pieces[BLUE] & (1 << p)) != 0)
+			return BLUE;
+		if ((pieces[RED] & (1 << p)) != 0)
+			return RED;
+		return NONE;
+	}
+
+	// puts a piece of side on point p (p must be unoccupied)
+	public void set(int p, int side) {
+		addPiece(side, p);
+	}
+
+	// removes whichever piece is on point p
+	public void clear(int p) {
+		int side = sideAt(p);
+		if (side != NONE)
+			removePiece(side, p);
+	}
+
+	// returns the number of pieces side has left to place
+	public int getToPlace(int side) {
+		return toPlace[side];
+	}
+
+	// sets the number of pieces side has left to place
+	public void setToPlace(int side, int count) {
+		changeToPlace(side, count - toPlace[side]);
+	}
+
+	// returns the number of pieces side has on the board and in tray
+	public int getCount(int side) {
+		return Integer.bitCount(pieces[side]) + toPlace[side];
+	}
+
+	// true if pieces are still to be placed from tray
+	public boolean isPlacingPhase() {
+		return toPlace[BLUE] > 0 || toPlace[RED] > 0;
+	}
+
+	// returns the side to move
+	public int getTurn() {
+		return turn;
+	}
+
+	// sets the side to move
+	public void setTurn(int side) {
+		if (side != turn)
+			switchTurn();
+	}
+
+	// switches the side to move
+	public void nextTurn() {
+		switchTurn();
+	}
+
+	// true if the side to move needs to delete an opponents piece
+	public boolean isDeletionRequired() {
+		return deletionRequired;
+	}
+
+	// sets the deletion required flag
+	public void setDeletionRequired(boolean deletionRequired) {
+		if (deletionRequired != this.deletionRequired)
+			flipDeletionRequired();
+	}
+
+	// returns the winner of the game, NONE if there is no winner yet
+	public int getWinner() {
+		return winner;
+	}
+
+	// sets the winner of the game
+	public void setWinner(int side) {
+		winner = side;
+	}
+
+	// returns true if the piece on point p is part of a mill
+	public boolean isInMill(int p) {
+		return ((millPieces[BLUE] | millPieces[RED]) & 1 << p) != 0;
+	}
+
+	// returns the mask of side's pieces that are part of a mill
+	public int getMillPieces(int side) {
+		return millPieces[side];
+	}
+
+	// returns the number of moves side's pieces could make on the board
+	public int countMoves(int side) {
+		return mobility[side];
+	}
+
+	// returns the number of complete mills side has
+	public int getMillCount(int side) {
+		return mills[side];
+	}
+
+	// returns the number of side's open twos:  mill lines with two of its pieces and an empty point
+	public int getOpenTwos(int side) {
+		return openTwos[side];
+	}
+
+	// returns the number of empty points that would complete two of side's mills at once
+	public int getDoubleSetups(int side) {
+		return doubleSetups[side];
+	}
+
+	// returns the number of side's pieces that have no empty point to move to
+	// (two table lookups, so this is worked out when asked for rather than kept up to date)
+	public int getBlocked(int side) {
+		return Integer.bitCount(pieces[side] & ~Topology.adjacentTo(getEmpty()));
+	}
+
+	// returns the number of side's open twos that a piece on empty point p would complete
+	public int getThreats(int side, int p) {
+		return threats[side][p];
+	}
+
+	// returns true if move (a place or a move) completes a mill for the side to move
+	public boolean closesMill(int move) {
+		int to = Move.to(move);
+		if (threats[turn][to] == 0)
+			return false;
+		if (Move.type(move) == Move.PLACE)
+			return true;
+		// the piece moving may be one of the two it was to join
+		int own = pieces[turn] & ~(1 << Move.from(move)) | 1 << to;
+		for (int i = 0; i < Topology.millCountAt(to); i++) {
+			int mill = Topology.millAt(to, i);
+			if ((own & mill) == mill)
+				return true;
+		}
+		return false;
+	}
+
+	// returns true if the piece on point p is one of the two pieces of an open two
+	public boolean isInOpenTwo(int p) {
+		int side = sideAt(p);
+		for (int i = 0; i < Topology.millCountAt(p); i++) {
+			int line = Topology.millAt(p, i);
+			if (Integer.bitCount(pieces[side] & line) == 2 && (pieces[side ^ 1] & line) == 0)
+				return true;
+		}
+		return false;
+	}
+
+	// returns the mask of opponent pieces that the side to move may delete:
+	// any piece not in a mill, or any piece at all if every piece is in a mill
+	public int getCaptureTargets() {
+		int opponentPieces = pieces[turn ^ 1];
+		int targets = opponentPieces & ~millPieces[turn ^ 1];
+		return targets != 0 ? targets : opponentPieces;
+	}
+
+	// fills moves with every legal move for the side to move and returns how many there are
+	// (moves must hold at least Move.MAX_MOVES entries)
+	public int generateMoves(int[] moves) {
+
+		int count = 0;
+
+		// no moves once the game is over
+		if (winner != NONE)
+			return 0;
+
+		// a mill was formed:  the only moves are captures
+		if (deletionRequired) {
+			int targets = getCaptureTargets();
+			while (targets != 0) {
+				moves[count++] = Move.capture(Integer.numberOfTrailingZeros(targets));
+				targets &= targets - 1;
+			}
+			return count;
+		}
+
+		int empty = getEmpty();
+
+		// placing phase:  a piece from the tray can go on any unoccupied point
+		// (a player with an empty tray cannot move until the placing phase ends)
+		if (isPlacingPhase()) {
+			if (toPlace[turn] > 0) {
+				while (empty != 0) {
+					moves[count++] = Move.place(Integer.numberOfTrailingZeros(empty));
+					empty &= empty - 1;
+				}
+			}
+			return count;
+		}
+
+		// moving phase:  a piece can move to any unoccupied linked point
+		int own = pieces[turn];
+		while (own != 0) {
+			int from = Integer.numberOfTrailingZeros(own);
+			own &= own - 1;
+			int targets = Topology.neighbourMask(from) & empty;
+			while (targets != 0) {
+				moves[count++] = Move.move(from, Integer.numberOfTrailingZeros(targets));
+				targets &= targets - 1;
+			}
+		}
+
+		return count;
+	}
+
+	// applies a legal move for the side to move, following the same rules as GameModel.play
+	public void makeMove(int move) {
+
+		int to = Move.to(move);
+
+		switch (Move.type(move)) {
+		case Move.CAPTURE:
+			removePiece(turn ^ 1, to);
+			flipDeletionRequired();
+			// the opponent has been reduced to the losing number of pieces
+			if (getCount(turn ^ 1) == LOSING_PIECE_COUNT)
+				winner = turn;
+			switchTurn();
+			// the switched-to player cannot make any moves
+			if (countMoves(turn) == 0)
+				winner = turn ^ 1;
+			break;
+
+		case Move.PLACE:
+			addPiece(turn, to);
+			changeToPlace(turn, -1);
+			if (Topology.formsMill(to, pieces[turn]))
+				flipDeletionRequired();
+			else {
+				// the player just emptied their tray and cannot make a valid move
+				if (toPlace[turn] == 0 && countMoves(turn) == 0)
+					winner = turn ^ 1;
+				switchTurn();
+			}
+			break;
+
+		default:
+			removePiece(turn, Move.from(move));
+			addPiece(turn, to);
+			if (Topology.formsMill(to, pieces[turn]))
+				flipDeletionRequired();
+			else {
+				switchTurn();
+				if (countMoves(turn) == 0)
+					winner = turn ^ 1;
+			}
+			break;
+		}
+	}
+
+	// reverts a move made by makeMove (moves must be unmade in the reverse order they were made)
+	public void unmakeMove(int move) {
+
+		int to = Move.to(move);
+
+		// no move can be made once there is a winner, so there was none before this move
+		winner = NONE;
+
+		switch (Move.type(move)) {
+		case Move.CAPTURE:
+			switchTurn();
+			addPiece(turn ^ 1, to);
+			flipDeletionRequired();
+			break;
+
+		case Move.PLACE:
+			// a placement either formed a mill (deletion required, same turn) or passed the turn
+			if (deletionRequired)
+				flipDeletionRequired();
+			else
+				switchTurn();
+			removePiece(turn, to);
+			changeToPlace(turn, 1);
+			break;
+
+		default:
+			if (deletionRequired)
+				flipDeletionRequired();
+			else
+				switchTurn();
+			removePiece(turn, to);
+			addPiece(turn, Move.from(move));
+			break;
+		}
+	}
+
+}
@@ -0,0 +1,48 @@
+package morris;
+
+import java.io.File;
+
+// Command line tool that measures how the parallel search scales:  searches one position to a fixed depth
+// with 1, 2, 4, ... threads and prints the time to depth and speedup for each thread count
+//
+// usage:  ScalingReport [depth] [max threads] [hash MB] [save file]
+//		depth defaults to 12, max threads to the number of available cores, hash to 64 MB,
+//		and the position to the opening position (blue to move)
+public class ScalingReport {
+
+	public static void main(String[] args) {
+
+		int depth = args.length > 0 ? Integer.parseInt(args[0]) : 12;
+		int maxThreads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		int hashSize = args.length > 2 ? Integer.parseInt(args[2]) : 64;
+		Position position = args.length > 3 ? new GameModel(new File(args[3])).getPosition() : new Position(Position.BLUE);
+
+		System.out.println("time to depth " + depth + " with up to " + maxThreads + " threads, " + hashSize + " MB hash");
+		System.out.println(String.format("%8s %10s %8s %14s %12s  %s", "threads", "time (ms)", "speedup", "nodes", "nps", "move"));
+
+		Engine engine = new Engine(new TranspositionTable(hashSize));
+		long baseTime = 0;
+
+		int threads = 1;
+		while (true) {
+
+			// every run starts from an empty table so runs do not help each other
+			engine.getTable().clear();
+			engine.setThreads(threads);
+			int move = engine.searchDepth(new Position(position), depth);
+
+			if (threads == 1)
+				baseTime = Math.max(1, engine.getElapsed());
+
+			System.out.println(String.format("%8d %10d %8.2f %14d %12d  %s", threads, engine.getElapsed(),
+					(double) baseTime / Math.max(1, engine.getElapsed()), engine.getNodes(), engine.getNodesPerSecond(), Move.toString(move)));
+
+			if (threads >= maxThreads)
+				break;
+			threads = Math.min(threads * 2, maxThreads);
+		}
+
+		engine.setThreads(1);
+	}
+
+}
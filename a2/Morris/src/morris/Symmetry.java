@@ -0,0 +1,129 @@
+package morris;
+
+// The 16 symmetries of the six men's board:  the 8 rotations and reflections of the square, each with or without
+// swapping the inner and outer squares
+// A symmetry maps every point to another point so that links and mills are kept, so transformed positions play
+// exactly the same.  Tables keyed by position can store one canonical representative of each group of symmetric
+// positions instead of up to 16 copies.
+//
+// Transform t is built from coordinates:  swap the squares if bit 3 is set, then reflect about the main diagonal
+// if bit 2 is set, then rotate clockwise a quarter turn (t & 3) times.  Transform 0 is the identity.
+public final class Symmetry {
+
+	// number of transforms
+	public static final int TRANSFORMS = 16;
+
+	// the transform that changes nothing
+	public static final int IDENTITY = 0;
+
+	// coordinate mapping that swaps the inner and outer squares (the middle lines are kept)
+	private static final int[] SWAP = { 2, -1, 0, 3, 6, -1, 4 };
+
+	// POINT[t][p] = the point p is mapped to by transform t
+	private static final int[][] POINT = new int[TRANSFORMS][Topology.POINTS];
+
+	// the transform that undoes each transform
+	private static final int[] INVERSE = new int[TRANSFORMS];
+
+	// mask transforms by byte:  the transform of a mask is LOW[t][mask & 0xff] | HIGH[t][mask >>> 8]
+	private static final int[][] LOW = new int[TRANSFORMS][256];
+	private static final int[][] HIGH = new int[TRANSFORMS][256];
+
+	static {
+		for (int t = 0; t < TRANSFORMS; t++) {
+			for (int p = 0; p < Topology.POINTS; p++) {
+				int x = Topology.xOf(p);
+				int y = Topology.yOf(p);
+				if ((t & 8) != 0) {
+					x = SWAP[x];
+					y = SWAP[y];
+				}
+				if ((t & 4) != 0) {
+					int swap = x;
+					x = y;
+					y = swap;
+				}
+				for (int r = 0; r < (t & 3); r++) {
+					int rotated = Topology.BOARD_SIZE - 1 - y;
+					y = x;
+					x = rotated;
+				}
+				POINT[t][p] = Topology.pointAt(x, y);
+			}
+		}
+
+		for (int t = 0; t < TRANSFORMS; t++) {
+			for (int u = 0; u < TRANSFORMS; u++) {
+				boolean undoes = true;
+				for (int p = 0; p < Topology.POINTS; p++)
+					undoes &= POINT[u][POINT[t][p]] == p;
+				if (undoes)
+					INVERSE[t] = u;
+			}
+		}
+
+		for (int t = 0; t < TRANSFORMS; t++) {
+			for (int b = 0; b < 256; b++) {
+				for (int i = 0; i < 8; i++) {
+					if ((b & (1 << i)) != 0) {
+						LOW[t][b] |= 1 << POINT[t][i];
+						HIGH[t][b] |= 1 << POINT[t][i + 8];
+					}
+				}
+			}
+		}
+	}
+
+	private Symmetry() {
+	}
+
+	// returns the point that p is mapped to by transform t
+	public static int point(int t, int p) {
+		return POINT[t][p];
+	}
+
+	// returns the transform of a mask of points
+	public static int mask(int t, int mask) {
+		return LOW[t][mask & 0xff] | HIGH[t][mask >>> 8];
+	}
+
+	// returns the transform that undoes t
+	public static int inverse(int t) {
+		return INVERSE[t];
+	}
+
+	// returns the transform of a move (Move.NONE stays Move.NONE)
+	public static int move(int t, int move) {
+		if (move == Move.NONE)
+			return Move.NONE;
+		switch (Move.type(move)) {
+		case Move.PLACE:
+			return Move.place(POINT[t][Move.to(move)]);
+		case Move.MOVE:
+			return Move.move(POINT[t][Move.from(move)], POINT[t][Move.to(move)]);
+		default:
+			return Move.capture(POINT[t][Move.to(move)]);
+		}
+	}
+
+	// returns the transform that maps the pieces (blue, red) to their canonical form:  the transform giving the
+	// smallest blue mask, and of those the smallest red mask (the lowest such transform if there are several)
+	public static int canonicalTransform(int blue, int red) {
+		int best = IDENTITY;
+		long bestKey = (long) blue << Topology.POINTS | red;
+		for (int t = 1; t < TRANSFORMS; t++) {
+			long key = (long) mask(t, blue) << Topology.POINTS | mask(t, red);
+			if (key < bestKey) {
+				bestKey = key;
+				best = t;
+			}
+		}
+		return best;
+	}
+
+	// returns true if the pieces (blue, red) are already in canonical form
+	public static boolean isCanonical(int blue, int red) {
+		return canonicalTransform(blue, red) == IDENTITY;
+	}
+
+}
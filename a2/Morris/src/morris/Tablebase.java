@@ -0,0 +1,372 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+// Solved values of every moving-phase position:  win, loss or draw for the side to move, and the number of turns
+// until the result with perfect play (see TablebaseGenerator for how it is built)
+//
+// Positions are indexed by a combinatorial ranking of the canonical form of their piece placements (see Symmetry),
+// so each group of up to 16 symmetric positions shares one entry:  for each pair of piece counts the canonical blue
+// placements are numbered in order, the red pieces are ranked among the points blue leaves empty, and the side to
+// move picks one of two entries.  Entries whose placement is not canonical are never used.  Only positions without
+// a pending deletion are stored; a position with a pending deletion is resolved by looking at each capture.
+//
+// Results are packed 2 bits per entry, with an optional table of one byte distances after them.  A saved tablebase
+// is opened by mapping the file into memory, so opening takes no time and several programs share one copy of it.
+// File layout (big-endian):  magic "MORRISTB", version, number of entries, flags, then the results and distances.
+public class Tablebase {
+
+	// results for the side to move
+	public static final int DRAW = 0;
+	public static final int WIN = 1;
+	public static final int LOSS = 2;
+
+	// stored for entries that are never used (their placement is not canonical)
+	static final int UNUSED = 3;
+
+	// range of piece counts (per side) covered by the tablebase
+	public static final int MIN_PIECES = Position.LOSING_PIECE_COUNT + 1;
+	public static final int MAX_PIECES = Position.PIECE_COUNT;
+
+	// file the game looks for (in the working directory)
+	public static final String DEFAULT_FILE = "morris.tb";
+
+	// file header (the magic number spells "MORRISTB")
+	private static final long MAGIC = 0x4d4f525249535442L;
+	private static final int VERSION = 2;
+	private static final int HEADER_SIZE = 20;
+	private static final int HAS_DISTANCES = 1;
+
+	// binomial coefficients:  CHOOSE[n][k] = n choose k
+	private static final int[][] CHOOSE = new int[Topology.POINTS + 1][Topology.POINTS + 1];
+
+	// number of each blue placement among the canonical placements with as many pieces (-1 if it is not canonical)
+	private static final int[] BLUE_RANK = new int[1 << Topology.POINTS];
+
+	// number of canonical blue placements with each number of pieces
+	private static final int[] BLUE_PLACEMENTS = new int[Topology.POINTS + 1];
+
+	// index of the first entry for each pair of piece counts (blue, red)
+	private static final int[][] OFFSET = new int[MAX_PIECES + 1][MAX_PIECES + 1];
+
+	// total number of entries
+	private static final int SIZE;
+
+	static {
+		for (int n = 0; n <= Topology.POINTS; n++) {
+			CHOOSE[n][0] = 1;
+			for (int k = 1; k <= n; k++)
+				CHOOSE[n][k] = CHOOSE[n - 1][k - 1] + (k <= n - 1 ? CHOOSE[n - 1][k] : 0);
+		}
+
+		// a blue placement is canonical if no transform makes it smaller
+		for (int blue = 0; blue <= Topology.ALL_POINTS; blue++) {
+			BLUE_RANK[blue] = -1;
+			boolean canonical = true;
+			for (int t = 1; t < Symmetry.TRANSFORMS && canonical; t++)
+				canonical = Symmetry.mask(t, blue) >= blue;
+			if (canonical)
+				BLUE_RANK[blue] = BLUE_PLACEMENTS[Integer.bitCount(blue)]++;
+		}
+
+		int offset = 0;
+		for (int blue = MIN_PIECES; blue <= MAX_PIECES; blue++) {
+			for (int red = MIN_PIECES; red <= MAX_PIECES; red++) {
+				OFFSET[blue][red] = offset;
+				offset += 2 * BLUE_PLACEMENTS[blue] * CHOOSE[Topology.POINTS - blue][red];
+			}
+		}
+		SIZE = offset;
+	}
+
+	// results of each entry (2 bits each, 4 to a byte) and distances in turns (null if the file has none)
+	private final ByteBuffer results;
+	private final ByteBuffer distances;
+
+	// creates a tablebase over solved results and distances (one byte per entry, indexed by index())
+	Tablebase(byte[] results, byte[] distances) {
+		byte[] packed = new byte[(SIZE + 3) / 4];
+		for (int i = 0; i < SIZE; i++)
+			packed[i >> 2] |= results[i] << ((i & 3) << 1);
+		this.results = ByteBuffer.wrap(packed);
+		this.distances = ByteBuffer.wrap(distances);
+	}
+
+	// creates a tablebase over (mapped) packed results and distances
+	private Tablebase(ByteBuffer results, ByteBuffer distances) {
+		this.results = results;
+		this.distances = distances;
+	}
+
+	// opens a saved tablebase by mapping it into memory
+	public static Tablebase open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC)
+				throw new IOException(file + " is not a tablebase file");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has tablebase version " + version + ", expected " + VERSION);
+			if (header.getInt() != SIZE)
+				throw new IOException(file + " does not match the tablebase size");
+			boolean hasDistances = (header.getInt() & HAS_DISTANCES) != 0;
+
+			int packedSize = (SIZE + 3) / 4;
+			if (channel.size() != HEADER_SIZE + packedSize + (hasDistances ? SIZE : 0))
+				throw new IOException(file + " is truncated");
+
+			ByteBuffer results = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, packedSize);
+			ByteBuffer distances = hasDistances ? channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE + packedSize, SIZE) : null;
+			return new Tablebase(results, distances);
+		} finally {
+			// the mappings stay valid after the file is closed
+			in.close();
+		}
+	}
+
+	// writes the tablebase to a file, with or without the distances
+	public void save(File file, boolean withDistances) throws IOException {
+		withDistances &= hasDistances();
+
+		ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.BIG_ENDIAN);
+		header.putLong(MAGIC).putInt(VERSION).putInt(SIZE).putInt(withDistances ? HAS_DISTANCES : 0);
+		header.flip();
+
+		RandomAccessFile out = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = out.getChannel();
+			channel.truncate(0);
+			write(channel, header);
+			write(channel, results.duplicate());
+			if (withDistances)
+				write(channel, distances.duplicate());
+		} finally {
+			out.close();
+		}
+	}
+
+	// writes all of buffer (from position 0) to channel
+	private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.rewind();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	// returns true if the tablebase has distances:  without them results are known but not how to make progress
+	public boolean hasDistances() {
+		return distances != null;
+	}
+
+	// returns the number of entries in a tablebase
+	public static int size() {
+		return SIZE;
+	}
+
+	// returns n choose k
+	static int choose(int n, int k) {
+		return k < 0 || k > n ? 0 : CHOOSE[n][k];
+	}
+
+	// returns the rank of mask among all masks with the same number of bits (in increasing numeric order)
+	static int rank(int mask) {
+		int rank = 0;
+		for (int i = 1; mask != 0; i++) {
+			rank += CHOOSE[Integer.numberOfTrailingZeros(mask)][i];
+			mask &= mask - 1;
+		}
+		return rank;
+	}
+
+	// squeezes out the points in skip:  each point of mask is renumbered among the points not in skip
+	static int compress(int mask, int skip) {
+		int compressed = 0;
+		while (mask != 0) {
+			int p = Integer.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+			compressed |= 1 << (p - Integer.bitCount(skip & ((1 << p) - 1)));
+		}
+		return compressed;
+	}
+
+	// the inverse of compress:  spreads the bits of compressed over the points not in skip
+	static int expand(int compressed, int skip) {
+		int mask = 0;
+		int free = ~skip & Topology.ALL_POINTS;
+		for (int i = 0; free != 0; i++) {
+			int p = Integer.lowestOneBit(free);
+			free &= free - 1;
+			if ((compressed & (1 << i)) != 0)
+				mask |= p;
+		}
+		return mask;
+	}
+
+	// returns true if blue is a canonical blue placement (the smallest of its symmetric forms)
+	static boolean isCanonicalBlue(int blue) {
+		return BLUE_RANK[blue] >= 0;
+	}
+
+	// returns the entry index of a position given its blue and red pieces and the side to move
+	static int index(int blue, int red, int turn) {
+		int t = Symmetry.canonicalTransform(blue, red);
+		if (t != Symmetry.IDENTITY) {
+			blue = Symmetry.mask(t, blue);
+			red = Symmetry.mask(t, red);
+		}
+		return entry(blue, red, turn);
+	}
+
+	// returns the entry for a placement as it is, without making it canonical (blue must be canonical)
+	static int entry(int blue, int red, int turn) {
+		int blueCount = Integer.bitCount(blue);
+		int redCount = Integer.bitCount(red);
+		int redRank = rank(compress(red, blue));
+		return OFFSET[blueCount][redCount] + ((BLUE_RANK[blue] * CHOOSE[Topology.POINTS - blueCount][redCount] + redRank) << 1) + turn;
+	}
+
+	// returns true if the tablebase covers the position:  the moving phase, with both sides in range
+	public static boolean covers(Position position) {
+		if (position.isPlacingPhase())
+			return false;
+		int blue = Integer.bitCount(position.getPieces(Position.BLUE));
+		int red = Integer.bitCount(position.getPieces(Position.RED));
+		return blue >= MIN_PIECES && blue <= MAX_PIECES && red >= MIN_PIECES && red <= MAX_PIECES;
+	}
+
+	// looks up a covered position:  returns the result for the side to move and the distance in turns, packed
+	// (use result() and distance() to read it)
+	public int probe(Position position) {
+
+		int turn = position.getTurn();
+		int own = position.getPieces(turn);
+		int opp = position.getPieces(turn ^ 1);
+
+		if (position.getWinner() != Position.NONE)
+			return pack(position.getWinner() == turn ? WIN : LOSS, 0);
+
+		if (!position.isDeletionRequired())
+			return lookup(own, opp, turn);
+
+		// a deletion is pending:  the side to move picks the best capture (each one finishes the current turn)
+		int best = pack(LOSS, 0);
+		int targets = position.getCaptureTargets();
+		while (targets != 0) {
+			int c = Integer.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+
+			int result;
+			if (Integer.bitCount(opp) - 1 == Position.LOSING_PIECE_COUNT)
+				result = pack(WIN, 1);
+			else {
+				int child = lookup(opp & ~(1 << c), own, turn ^ 1);
+				result = pack(opposite(result(child)), distance(child) + 1);
+			}
+
+			if (better(result, best))
+				best = result;
+		}
+		return best;
+	}
+
+	// looks up the entry for the side to move (own pieces) against the other side (opp pieces)
+	// (the distance is 0 if there are no distances)
+	private int lookup(int own, int opp, int turn) {
+		int i = turn == Position.BLUE ? index(own, opp, turn) : index(opp, own, turn);
+		int result = results.get(i >> 2) >> ((i & 3) << 1) & 0x3;
+		return pack(result, distances == null ? 0 : distances.get(i) & 0xff);
+	}
+
+	// returns the best move in a covered position (Move.NONE if there are no moves)
+	public int bestMove(Position position) {
+
+		int[] moves = new int[Move.MAX_MOVES];
+		int count = position.generateMoves(moves);
+		int side = position.getTurn();
+
+		int bestMove = Move.NONE;
+		int best = 0;
+
+		for (int i = 0; i < count; i++) {
+			position.makeMove(moves[i]);
+
+			// probe the result after the move, as seen by the side that made it
+			int child = probe(position);
+			int result;
+			if (position.getTurn() == side && position.getWinner() == Position.NONE)
+				result = child;
+			else if (position.getWinner() != Position.NONE)
+				result = pack(position.getWinner() == side ? WIN : LOSS, 1);
+			else
+				result = pack(opposite(result(child)), distance(child) + 1);
+
+			position.unmakeMove(moves[i]);
+
+			if (bestMove == Move.NONE || better(result, best)) {
+				bestMove = moves[i];
+				best = result;
+			}
+		}
+
+		return bestMove;
+	}
+
+	// true if result a is better than result b for the side to move:
+	// the quickest win, then a draw, then the slowest loss
+	private static boolean better(int a, int b) {
+		return order(a) > order(b);
+	}
+
+	// orders results from worst (quick loss) to best (quick win)
+	private static int order(int packed) {
+		switch (result(packed)) {
+		case WIN:
+			return 2000 - distance(packed);
+		case LOSS:
+			return distance(packed);
+		default:
+			return 1000;
+		}
+	}
+
+	// returns the result as seen by the other side
+	private static int opposite(int result) {
+		return result == WIN ? LOSS : result == LOSS ? WIN : DRAW;
+	}
+
+	// packs a result and a distance into one int
+	private static int pack(int result, int distance) {
+		return distance << 2 | result;
+	}
+
+	// returns the result (WIN, LOSS or DRAW) from a probe
+	public static int result(int probe) {
+		return probe & 0x3;
+	}
+
+	// returns the distance in turns from a probe
+	public static int distance(int probe) {
+		return probe >>> 2;
+	}
+
+	// returns a one line summary of the results:  how many positions are won, lost and drawn, and the longest win
+	public String getReport() {
+		int[] counts = new int[4];
+		int longest = 0;
+		for (int i = 0; i < SIZE; i++) {
+			int result = results.get(i >> 2) >> ((i & 3) << 1) & 0x3;
+			counts[result]++;
+			if (result == WIN && distances != null)
+				longest = Math.max(longest, distances.get(i) & 0xff);
+		}
+		return String.format("tablebase %d entries  won %d  lost %d  drawn %d  unused %d  longest win %d turns",
+				SIZE, counts[WIN], counts[LOSS], counts[DRAW], counts[UNUSED], longest);
+	}
+
+}
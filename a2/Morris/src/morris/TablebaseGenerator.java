@@ -0,0 +1,296 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+
+// Builds the moving-phase Tablebase by retrograde analysis
+//
+// A turn in the moving phase is one move, plus a capture if the move formed a mill.  Positions where the side to move
+// has no legal move are losses;  a turn whose capture leaves the opponent with the losing number of pieces is a win.
+// These are the same rules Position.makeMove (and so GameModel.play) follows, including the capture of any piece
+// when all of the opponent's pieces are in mills.  From those results the generator works backwards one turn at
+// a time:  a position with a move to a lost position is won, and a position whose moves all lead to won positions
+// is lost.  Whatever is never resolved can be played forever and is a draw.
+//
+// Only the canonical form of each group of symmetric positions is solved.  A turn may reach a group through
+// several of its forms, so instead of counting unresolved turns a position is checked for a loss by looking up
+// all of its turns again.
+//
+// usage:  TablebaseGenerator [file] [-nodistances]
+//		file defaults to Tablebase.DEFAULT_FILE;  -nodistances leaves out the distances, for a file a quarter the size
+public class TablebaseGenerator {
+
+	// result codes while generating (the same as Tablebase's)
+	private static final byte UNKNOWN = Tablebase.DRAW;
+	private static final byte WIN = Tablebase.WIN;
+	private static final byte LOSS = Tablebase.LOSS;
+	private static final byte UNUSED = Tablebase.UNUSED;
+
+	// the longest distance that can be stored
+	private static final int MAX_DISTANCE = 255;
+
+	// result and distance in turns of each entry
+	private final byte[] results;
+	private final byte[] distances;
+
+	// number of entries resolved so far
+	private int resolved;
+
+	private TablebaseGenerator() {
+		results = new byte[Tablebase.size()];
+		distances = new byte[Tablebase.size()];
+	}
+
+	// solves every moving-phase position and returns the tablebase
+	public static Tablebase generate() {
+		TablebaseGenerator generator = new TablebaseGenerator();
+		generator.markUnused();
+		generator.initialize();
+		int distance = 0;
+		while (generator.resolveLevel(distance))
+			distance++;
+		return new Tablebase(generator.results, generator.distances);
+	}
+
+	// the entries are visited position by position:  every split of piece counts, every canonical placement of blue
+	// and red pieces, and both sides to move
+	private interface Visitor {
+		void visit(int own, int opp, int turn, int index);
+	}
+
+	// calls visitor for every used entry
+	private void forEachPosition(Visitor visitor) {
+		for (int blueCount = Tablebase.MIN_PIECES; blueCount <= Tablebase.MAX_PIECES; blueCount++) {
+			for (int redCount = Tablebase.MIN_PIECES; redCount <= Tablebase.MAX_PIECES; redCount++) {
+				int redSpace = Topology.POINTS - blueCount;
+				for (int blue = (1 << blueCount) - 1; blue <= Topology.ALL_POINTS; blue = nextCombination(blue)) {
+					if (!Tablebase.isCanonicalBlue(blue))
+						continue;
+					for (int compressed = (1 << redCount) - 1; compressed < 1 << redSpace; compressed = nextCombination(compressed)) {
+						int red = Tablebase.expand(compressed, blue);
+						if (!Symmetry.isCanonical(blue, red))
+							continue;
+						int index = Tablebase.entry(blue, red, Position.BLUE);
+						visitor.visit(blue, red, Position.BLUE, index);
+						visitor.visit(red, blue, Position.RED, index + 1);
+					}
+				}
+			}
+		}
+	}
+
+	// marks the entries whose placement is not canonical
+	private void markUnused() {
+		for (int blueCount = Tablebase.MIN_PIECES; blueCount <= Tablebase.MAX_PIECES; blueCount++) {
+			for (int redCount = Tablebase.MIN_PIECES; redCount <= Tablebase.MAX_PIECES; redCount++) {
+				int redSpace = Topology.POINTS - blueCount;
+				for (int blue = (1 << blueCount) - 1; blue <= Topology.ALL_POINTS; blue = nextCombination(blue)) {
+					if (!Tablebase.isCanonicalBlue(blue))
+						continue;
+					for (int compressed = (1 << redCount) - 1; compressed < 1 << redSpace; compressed = nextCombination(compressed)) {
+						int red = Tablebase.expand(compressed, blue);
+						if (!Symmetry.isCanonical(blue, red)) {
+							int index = Tablebase.entry(blue, red, Position.BLUE);
+							results[index] = results[index + 1] = UNUSED;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	// returns the next larger int with the same number of bits set
+	private static int nextCombination(int mask) {
+		int low = mask & -mask;
+		int ripple = mask + low;
+		return ripple | (((mask ^ ripple) >>> 2) / low);
+	}
+
+	// returns the entry index of a position, given the pieces of the side to move (own) and the other side (opp)
+	private static int indexOf(int own, int opp, int turn) {
+		return turn == Position.BLUE ? Tablebase.index(own, opp, turn) : Tablebase.index(opp, own, turn);
+	}
+
+	// returns the pieces of opp that may be captured
+	private static int captureTargets(int opp) {
+		int targets = opp & ~Topology.millPieces(opp);
+		return targets != 0 ? targets : opp;
+	}
+
+	// sets the result of an entry (a distance too long for its byte fails before anything is stored)
+	private void resolve(int index, byte result, int distance) {
+		if (distance > MAX_DISTANCE)
+			throw new IllegalStateException("distance to result exceeds " + MAX_DISTANCE + " turns");
+		results[index] = result;
+		distances[index] = (byte) distance;
+		resolved++;
+	}
+
+	// first pass:  resolves positions decided within the first turn
+	private void initialize() {
+		forEachPosition(new Visitor() {
+			@Override
+			public void visit(int own, int opp, int turn, int index) {
+
+				int empty = ~(own | opp) & Topology.ALL_POINTS;
+
+				// the side to move cannot move:  lost
+				if (Topology.countMoves(own, empty) == 0) {
+					resolve(index, LOSS, 0);
+					return;
+				}
+
+				// a capture that leaves the opponent with the losing number of pieces wins
+				if (Integer.bitCount(opp) - 1 == Position.LOSING_PIECE_COUNT && canFormMill(own, empty))
+					resolve(index, WIN, 1);
+			}
+		});
+	}
+
+	// returns true if own can form a mill with one move
+	private static boolean canFormMill(int own, int empty) {
+		int pieces = own;
+		while (pieces != 0) {
+			int from = Integer.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			int targets = Topology.neighbourMask(from) & empty;
+			while (targets != 0) {
+				int to = Integer.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				if (Topology.formsMill(to, own & ~(1 << from) | 1 << to))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	// resolves the predecessors of every position resolved at distance:  returns false if there were none
+	private boolean resolveLevel(final int distance) {
+		final int before = resolved;
+		final boolean[] found = new boolean[1];
+
+		forEachPosition(new Visitor() {
+			@Override
+			public void visit(int own, int opp, int turn, int index) {
+				if (results[index] != UNKNOWN && (distances[index] & 0xff) == distance) {
+					found[0] = true;
+					unmove(own, opp, turn, results[index], distance);
+				}
+			}
+		});
+
+		System.out.println("distance " + distance + ":  " + (resolved - before) + " positions resolved, " + resolved + " in total");
+		return found[0];
+	}
+
+	// visits every position whose side to move (the mover) had a turn leading to this position, where the side to
+	// move here (own) has result:  a move to a lost position wins, and a position is lost once every turn leads to
+	// a won position
+	private void unmove(int own, int mover, int turn, byte result, int distance) {
+
+		int empty = ~(own | mover) & Topology.ALL_POINTS;
+		int moverTurn = turn ^ 1;
+		boolean canCapture = Integer.bitCount(own) < Tablebase.MAX_PIECES;
+
+		int pieces = mover;
+		while (pieces != 0) {
+			int to = Integer.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+
+			// a piece that is in a mill through its point got there by a turn with a capture
+			boolean milled = Topology.formsMill(to, mover);
+			if (milled && !canCapture)
+				continue;
+
+			int froms = Topology.neighbourMask(to) & empty;
+			while (froms != 0) {
+				int from = Integer.numberOfTrailingZeros(froms);
+				froms &= froms - 1;
+				int before = mover & ~(1 << to) | 1 << from;
+
+				if (!milled) {
+					update(before, own, moverTurn, result, distance);
+					continue;
+				}
+
+				// the captured piece was on some point that is empty now
+				int captured = empty & ~(1 << from);
+				while (captured != 0) {
+					int c = Integer.numberOfTrailingZeros(captured);
+					captured &= captured - 1;
+					int restored = own | 1 << c;
+					if ((captureTargets(restored) & (1 << c)) != 0)
+						update(before, restored, moverTurn, result, distance);
+				}
+			}
+		}
+	}
+
+	// updates a predecessor (own to move against opp) with the result of one of its turns, a result for the other
+	// side reached at distance
+	private void update(int own, int opp, int turn, byte result, int distance) {
+		int index = indexOf(own, opp, turn);
+		if (results[index] != UNKNOWN)
+			return;
+		if (result == LOSS)
+			resolve(index, WIN, distance + 1);
+		else if (allTurnsLose(own, opp, turn, distance))
+			resolve(index, LOSS, distance + 1);
+	}
+
+	// returns true if every turn of own (to move against opp) leads to a position won by opp within distance turns
+	private boolean allTurnsLose(int own, int opp, int turn, int distance) {
+		int empty = ~(own | opp) & Topology.ALL_POINTS;
+
+		int pieces = own;
+		while (pieces != 0) {
+			int from = Integer.numberOfTrailingZeros(pieces);
+			pieces &= pieces - 1;
+			int targets = Topology.neighbourMask(from) & empty;
+			while (targets != 0) {
+				int to = Integer.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				int moved = own & ~(1 << from) | 1 << to;
+
+				if (!Topology.formsMill(to, moved)) {
+					if (!won(opp, moved, turn ^ 1, distance))
+						return false;
+					continue;
+				}
+
+				int captures = captureTargets(opp);
+				while (captures != 0) {
+					int c = Integer.numberOfTrailingZeros(captures);
+					captures &= captures - 1;
+					if (!won(opp & ~(1 << c), moved, turn ^ 1, distance))
+						return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	// returns true if the side to move (own) has won within distance turns
+	private boolean won(int own, int opp, int turn, int distance) {
+		int index = indexOf(own, opp, turn);
+		return results[index] == WIN && (distances[index] & 0xff) <= distance;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		File file = new File(args.length > 0 ? args[0] : Tablebase.DEFAULT_FILE);
+		boolean withDistances = !(args.length > 1 && args[1].equals("-nodistances"));
+
+		long start = System.currentTimeMillis();
+		System.out.println("generating " + Tablebase.size() + " positions");
+
+		Tablebase tablebase = generate();
+
+		System.out.println("done in " + (System.currentTimeMillis() - start) + " ms");
+		System.out.println(tablebase.getReport());
+
+		tablebase.save(file, withDistances);
+		System.out.println("written to " + file + " (" + file.length() + " bytes)");
+	}
+
+}
@@ -0,0 +1,250 @@
+package morris;
+
+// This class describes the six men's board:  which points exist, how they are linked, and which lines form mills
+// The tables are built once from the board layout and never change, so every neighbour or mill question
+// asked by the model is a table lookup rather than a walk over the 7x7 grid
+public final class Topology {
+
+	// the number of real board points
+	public static final int POINTS = 16;
+
+	// mask with a bit set for every board point
+	public static final int ALL_POINTS = (1 << POINTS) - 1;
+
+	// the square dimension of the modeled board
+	public static final int BOARD_SIZE = 7;
+
+	// board coordinates of each point:  the outer square clockwise from the top left corner (0 - 7),
+	// then the inner square clockwise from its top left corner (8 - 15)
+	private static final int[] POINT_X = { 0, 3, 6, 6, 6, 3, 0, 0, 2, 3, 4, 4, 4, 3, 2, 2 };
+	private static final int[] POINT_Y = { 0, 0, 0, 3, 6, 6, 6, 3, 2, 2, 2, 3, 4, 4, 4, 3 };
+
+	// maps board[x][y] to a point index, -1 if (x, y) is not a board point
+	private static final int[][] POINT_INDEX = new int[BOARD_SIZE][BOARD_SIZE];
+
+	// true if board[x][y] is a path linking two board points
+	private static final boolean[][] PATH = new boolean[BOARD_SIZE][BOARD_SIZE];
+
+	// neighbouring points of each point, as a list and as a mask
+	private static final int[][] NEIGHBOURS = new int[POINTS][];
+	private static final int[] NEIGHBOUR_MASK = new int[POINTS];
+
+	// every mill line on the board, as a mask of its three points
+	private static final int[] MILLS;
+
+	// the mill lines (masks) that each point belongs to
+	private static final int[][] POINT_MILLS = new int[POINTS][];
+
+	// the combined mask of the mill lines that each point belongs to
+	private static final int[] POINT_MILL_MASK = new int[POINTS];
+
+	// the points linked to any point of a mask, looked up by the mask's low and high byte
+	private static final int[] ADJACENT_LOW = new int[256];
+	private static final int[] ADJACENT_HIGH = new int[256];
+
+	static {
+		for (int i = 0; i < BOARD_SIZE; i++)
+			for (int j = 0; j < BOARD_SIZE; j++)
+				POINT_INDEX[i][j] = -1;
+
+		for (int p = 0; p < POINTS; p++)
+			POINT_INDEX[POINT_X[p]][POINT_Y[p]] = p;
+
+		// set paths
+		PATH[0][1] = PATH[0][2] = PATH[0][4] = PATH[0][5] = PATH[1][0] = PATH[1][3] = PATH[1][6] = PATH[2][0] = PATH[2][6] = PATH[3][1] = PATH[3][5] = PATH[4][0] = PATH[4][6] = PATH[5][0] = PATH[5][3] = PATH[5][6] = PATH[6][1] = PATH[6][2] = PATH[6][4] = PATH[6][5] = true;
+
+		// find the neighbours of each point by following paths right and down (links are symmetric)
+		for (int p = 0; p < POINTS; p++) {
+			int right = walk(POINT_X[p], POINT_Y[p], 1, 0);
+			int down = walk(POINT_X[p], POINT_Y[p], 0, 1);
+			if (right != -1) {
+				NEIGHBOUR_MASK[p] |= 1 << right;
+				NEIGHBOUR_MASK[right] |= 1 << p;
+			}
+			if (down != -1) {
+				NEIGHBOUR_MASK[p] |= 1 << down;
+				NEIGHBOUR_MASK[down] |= 1 << p;
+			}
+		}
+
+		for (int p = 0; p < POINTS; p++)
+			buildNeighbourList(p);
+
+		for (int b = 0; b < 256; b++) {
+			for (int i = 0; i < 8; i++) {
+				if ((b & 1 << i) != 0) {
+					ADJACENT_LOW[b] |= NEIGHBOUR_MASK[i];
+					ADJACENT_HIGH[b] |= NEIGHBOUR_MASK[i + 8];
+				}
+			}
+		}
+
+		// a mill is a straight run of exactly three linked points
+		int[] mills = new int[POINTS];
+		int millCount = 0;
+		for (int p = 0; p < POINTS; p++) {
+			for (int d = 0; d < 2; d++) {
+				int dx = d == 0 ? 1 : 0;
+				int dy = d == 0 ? 0 : 1;
+
+				// only start runs at their first point
+				if (walk(POINT_X[p], POINT_Y[p], -dx, -dy) != -1)
+					continue;
+
+				int line = 1 << p;
+				int length = 1;
+				int q = walk(POINT_X[p], POINT_Y[p], dx, dy);
+				while (q != -1) {
+					line |= 1 << q;
+					length++;
+					q = walk(POINT_X[q], POINT_Y[q], dx, dy);
+				}
+
+				if (length == 3)
+					mills[millCount++] = line;
+			}
+		}
+
+		MILLS = new int[millCount];
+		System.arraycopy(mills, 0, MILLS, 0, millCount);
+
+		for (int p = 0; p < POINTS; p++) {
+			int count = 0;
+			for (int m = 0; m < MILLS.length; m++)
+				if ((MILLS[m] & (1 << p)) != 0)
+					count++;
+
+			POINT_MILLS[p] = new int[count];
+			count = 0;
+			for (int m = 0; m < MILLS.length; m++) {
+				if ((MILLS[m] & (1 << p)) != 0) {
+					POINT_MILLS[p][count++] = MILLS[m];
+					POINT_MILL_MASK[p] |= MILLS[m];
+				}
+			}
+		}
+	}
+
+	private Topology() {
+	}
+
+	// follows paths from board[x][y] in direction (dx, dy) and returns the first point reached, -1 if none
+	private static int walk(int x, int y, int dx, int dy) {
+		x += dx;
+		y += dy;
+		while (x >= 0 && x < BOARD_SIZE && y >= 0 && y < BOARD_SIZE) {
+			if (POINT_INDEX[x][y] != -1)
+				return POINT_INDEX[x][y];
+			if (!PATH[x][y])
+				return -1;
+			x += dx;
+			y += dy;
+		}
+		return -1;
+	}
+
+	// fills the neighbour list of point p from its neighbour mask
+	private static void buildNeighbourList(int p) {
+		NEIGHBOURS[p] = new int[Integer.bitCount(NEIGHBOUR_MASK[p])];
+		int mask = NEIGHBOUR_MASK[p];
+		for (int i = 0; mask != 0; i++) {
+			NEIGHBOURS[p][i] = Integer.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+		}
+	}
+
+	// returns the point index of board[x][y], or -1 if it is not a board point
+	public static int pointAt(int x, int y) {
+		return POINT_INDEX[x][y];
+	}
+
+	// returns the board x coordinate of point p
+	public static int xOf(int p) {
+		return POINT_X[p];
+	}
+
+	// returns the board y coordinate of point p
+	public static int yOf(int p) {
+		return POINT_Y[p];
+	}
+
+	// returns true if board[x][y] is a path between two board points
+	public static boolean isPathAt(int x, int y) {
+		return PATH[x][y];
+	}
+
+	// returns the number of points linked to point p
+	public static int neighbourCount(int p) {
+		return NEIGHBOURS[p].length;
+	}
+
+	// returns the i-th point linked to point p
+	public static int neighbour(int p, int i) {
+		return NEIGHBOURS[p][i];
+	}
+
+	// returns the mask of points linked to point p
+	public static int neighbourMask(int p) {
+		return NEIGHBOUR_MASK[p];
+	}
+
+	// returns the mask of points linked to any point in mask
+	public static int adjacentTo(int mask) {
+		return ADJACENT_LOW[mask & 0xff] | ADJACENT_HIGH[mask >>> 8 & 0xff];
+	}
+
+	// returns the number of mill lines on the board
+	public static int millCount() {
+		return MILLS.length;
+	}
+
+	// returns mill line m as a mask of its points
+	public static int mill(int m) {
+		return MILLS[m];
+	}
+
+	// returns the number of mill lines that point p belongs to
+	public static int millCountAt(int p) {
+		return POINT_MILLS[p].length;
+	}
+
+	// returns the i-th mill line (as a mask) that point p belongs to
+	public static int millAt(int p, int i) {
+		return POINT_MILLS[p][i];
+	}
+
+	// returns the union of the mill lines that point p belongs to
+	public static int millMaskAt(int p) {
+		return POINT_MILL_MASK[p];
+	}
+
+	// returns true if the pieces in mask complete a mill through point p
+	public static boolean formsMill(int p, int mask) {
+		int[] mills = POINT_MILLS[p];
+		for (int i = 0; i < mills.length; i++)
+			if ((mask & mills[i]) == mills[i])
+				return true;
+		return false;
+	}
+
+	// returns the mask of pieces in mask that are part of a complete mill
+	public static int millPieces(int mask) {
+		int inMills = 0;
+		for (int m = 0; m < MILLS.length; m++)
+			if ((mask & MILLS[m]) == MILLS[m])
+				inMills |= MILLS[m];
+		return inMills;
+	}
+
+	// returns the number of moves available to the pieces in mask, given the mask of unoccupied points
+	public static int countMoves(int mask, int empty) {
+		int moves = 0;
+		while (mask != 0) {
+			int p = Integer.numberOfTrailingZeros(mask);
+			mask &= mask - 1;
+			moves += Integer.bitCount(NEIGHBOUR_MASK[p] & empty);
+		}
+		return moves;
+	}
+
+}
@@ -0,0 +1,423 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Command line tool that plays a match between two computer players without opening any windows
+// Games are played on every core at once, each worker thread with its own pair of players.  Every game is started
+// from its own seed (which side moves first, a few random opening moves, and any random choices of the players), so
+// any game can be played again on its own.  Results are printed as each game finishes, with a sequential probability
+// ratio test (SPRT) of whether player A is elo0 or elo1 Elo stronger than player B:  the match stops as soon as the
+// test accepts either.  Players swap colours every game, and either plays from the opening book while in book.
+// The quiet positions of every game can be recorded with its result, for the Tuner.
+//
+// usage:  Tournament [-a player] [-b player] [-games n] [-threads n] [-seed n] [-openings n] [-maxplies n]
+//		[-elo0 n] [-elo1 n] [-alpha n] [-beta n] [-tablebase file] [-book file] [-record file]
+//		a player is "alphabeta:<ms per move>", "alphabeta:d<depth>", "mcts:<ms per move>" or "random";  an
+//		alphabeta player can add ":<weights file>" to evaluate with the weights in that file instead of the defaults
+//		defaults:  alphabeta:d6 against mcts:100, 1000 games on every core, seed 1, 4 random opening plies,
+//		a draw after 300 plies, elo0 0, elo1 20, alpha = beta = 0.05, the tablebase and book files if there are any,
+//		and no recording (positions are added to the end of the record file if it exists)
+public class Tournament {
+
+	// settings
+	private String playerA = "alphabeta:d6";
+	private String playerB = "mcts:100";
+	private int games = 1000;
+	private int threads = Runtime.getRuntime().availableProcessors();
+	private long seed = 1;
+	private int openings = 4;
+	private int maxPlies = 300;
+	private double elo0 = 0;
+	private double elo1 = 20;
+	private double alpha = 0.05;
+	private double beta = 0.05;
+	private Tablebase tablebase;
+	private OpeningBook book;
+	private TuningData record;
+
+	// evaluation weights of each player
+	private Weights weightsA;
+	private Weights weightsB;
+
+	// results so far, for player A
+	private int wins;
+	private int draws;
+	private int losses;
+
+	// set once the match is decided
+	private volatile boolean finished;
+
+	private long start;
+
+	public static void main(String[] args) throws IOException {
+		Tournament tournament = new Tournament();
+		tournament.parse(args);
+		tournament.run();
+	}
+
+	// reads the settings from the command line
+	private void parse(String[] args) throws IOException {
+		File tablebaseFile = new File(Tablebase.DEFAULT_FILE);
+		File bookFile = new File(OpeningBook.DEFAULT_FILE);
+
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			String value = args[i + 1];
+			switch (args[i]) {
+			case "-a":
+				playerA = value;
+				break;
+			case "-b":
+				playerB = value;
+				break;
+			case "-games":
+				games = Integer.parseInt(value);
+				break;
+			case "-threads":
+				threads = Integer.parseInt(value);
+				break;
+			case "-seed":
+				seed = Long.parseLong(value);
+				break;
+			case "-openings":
+				openings = Integer.parseInt(value);
+				break;
+			case "-maxplies":
+				maxPlies = Integer.parseInt(value);
+				break;
+			case "-elo0":
+				elo0 = Double.parseDouble(value);
+				break;
+			case "-elo1":
+				elo1 = Double.parseDouble(value);
+				break;
+			case "-alpha":
+				alpha = Double.parseDouble(value);
+				break;
+			case "-beta":
+				beta = Double.parseDouble(value);
+				break;
+			case "-tablebase":
+				tablebaseFile = new File(value);
+				break;
+			case "-book":
+				bookFile = new File(value);
+				break;
+			case "-record":
+				record = TuningData.create(new File(value));
+				break;
+			default:
+				throw new IllegalArgumentException("unknown option " + args[i]);
+			}
+		}
+
+		if (tablebaseFile.exists())
+			tablebase = Tablebase.open(tablebaseFile);
+		if (bookFile.exists())
+			book = OpeningBook.open(bookFile);
+
+		// fail on a bad player before starting any threads
+		weightsA = loadWeights(playerA);
+		weightsB = loadWeights(playerB);
+		createPlayer(playerA, weightsA);
+		createPlayer(playerB, weightsB);
+	}
+
+	// plays the match
+	private void run() {
+
+		System.out.println(playerA + " vs " + playerB + ":  " + games + " games on " + threads + " threads, seed " + seed
+				+ (tablebase != null ? ", with tablebase" : "") + (book != null ? ", with book" : "") + ", SPRT elo0 " + elo0 + " elo1 " + elo1);
+
+		start = System.currentTimeMillis();
+		final AtomicInteger next = new AtomicInteger();
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		Future<?>[] workers = new Future<?>[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = pool.submit(new Runnable() {
+				@Override
+				public void run() {
+					Player a = createPlayer(playerA, weightsA);
+					Player b = createPlayer(playerB, weightsB);
+					for (int game = next.getAndIncrement(); game < games && !finished; game = next.getAndIncrement())
+						play(game, a, b);
+				}
+			});
+		}
+
+		for (Future<?> worker : workers) {
+			try {
+				worker.get();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+		}
+		pool.shutdown();
+
+		if (record != null) {
+			try {
+				record.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		long elapsed = Math.max(1, System.currentTimeMillis() - start);
+		int played = wins + draws + losses;
+		double llr = llr();
+		String verdict = llr >= upperBound() ? "H1 accepted (elo >= " + elo1 + ")" : llr <= lowerBound() ? "H0 accepted (elo <= " + elo0 + ")" : "inconclusive";
+
+		System.out.println();
+		System.out.println(String.format("%s vs %s:  +%d =%d -%d  score %.1f%%  elo %+.1f", playerA, playerB, wins, draws, losses, 100 * score(), elo()));
+		System.out.println(String.format("SPRT llr %.2f (%.2f, %.2f):  %s", llr, lowerBound(), upperBound(), verdict));
+		System.out.println(String.format("%d games in %.1f s:  %.0f games/hour", played, elapsed / 1000.0, played * 3600000.0 / elapsed));
+	}
+
+	// plays one game and reports its result
+	private void play(int game, Player a, Player b) {
+
+		long gameSeed = seed * 1000003 + game;
+		Random random = new Random(gameSeed);
+
+		// the first player is picked the same way as in a game in the window
+		Position position = new Position(new GameModel(false, gameSeed).getPosition());
+
+		// a few random opening moves, so that deterministic players do not play the same game over and over
+		int[] moves = new int[Move.MAX_MOVES];
+		for (int i = 0; i < openings && position.getWinner() == Position.NONE; i++) {
+			int count = position.generateMoves(moves);
+			if (count == 0)
+				break;
+			position.makeMove(moves[random.nextInt(count)]);
+		}
+
+		// player A is blue in even games
+		Player blue = game % 2 == 0 ? a : b;
+		Player red = game % 2 == 0 ? b : a;
+		blue.newGame(gameSeed);
+		red.newGame(gameSeed);
+
+		// the positions played, if they are recorded (a position in the middle of taking a piece is not quiet)
+		long[] played = new long[maxPlies];
+		int recorded = 0;
+
+		int plies = 0;
+		while (position.getWinner() == Position.NONE && plies < maxPlies) {
+			if (record != null && !position.isDeletionRequired())
+				played[recorded++] = TuningData.encode(position);
+			// a position in book is played from it, so neither player searches it
+			int move = book != null ? book.probe(position) : Move.NONE;
+			if (move == Move.NONE)
+				move = (position.getTurn() == Position.BLUE ? blue : red).chooseMove(position);
+			if (move == Move.NONE)
+				break;
+			position.makeMove(move);
+			plies++;
+		}
+
+		// a side left without a move has lost (the rules only check this after a move)
+		int winner = position.getWinner();
+		if (winner == Position.NONE && plies < maxPlies && position.generateMoves(moves) == 0)
+			winner = Position.opponent(position.getTurn());
+
+		if (record != null) {
+			try {
+				record.addGame(played, recorded, winner);
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+
+		report(game, game % 2 == 0, winner, plies);
+	}
+
+	// records a game result and prints it with the running totals, ending the match once the SPRT is decided
+	private synchronized void report(int game, boolean aIsBlue, int winner, int plies) {
+
+		String result;
+		if (winner == Position.NONE) {
+			draws++;
+			result = "draw";
+		} else {
+			if ((winner == Position.BLUE) == aIsBlue)
+				wins++;
+			else
+				losses++;
+			result = (winner == Position.BLUE ? "blue" : "red") + " wins";
+		}
+
+		double llr = llr();
+		System.out.println(String.format("game %5d  %s (blue) vs %s (red)  %-9s %4d plies   +%d =%d -%d  elo %+6.1f  llr %5.2f",
+				game, aIsBlue ? playerA : playerB, aIsBlue ? playerB : playerA, result, plies, wins, draws, losses, elo(), llr));
+
+		if (llr >= upperBound() || llr <= lowerBound())
+			finished = true;
+	}
+
+	// returns player A's score so far (a win is 1, a draw 0.5)
+	private double score() {
+		int played = wins + draws + losses;
+		return played == 0 ? 0.5 : (wins + 0.5 * draws) / played;
+	}
+
+	// returns the Elo difference of player A over player B estimated from the score
+	private double elo() {
+		double score = Math.min(Math.max(score(), 0.001), 0.999);
+		return -400 * Math.log10(1 / score - 1);
+	}
+
+	// returns the expected score of a player elo stronger than its opponent
+	private static double expectedScore(double elo) {
+		return 1 / (1 + Math.pow(10, -elo / 400));
+	}
+
+	// returns the log-likelihood ratio of elo1 against elo0, using a normal approximation of the per game score
+	// (the variance counts half a game of each result more, so that a one-sided match still has a variance)
+	private double llr() {
+		int played = wins + draws + losses;
+		if (played == 0)
+			return 0;
+		double score = score();
+		double variance = ((wins + 0.5) * (1 - score) * (1 - score) + (draws + 0.5) * (0.5 - score) * (0.5 - score)
+				+ (losses + 0.5) * score * score) / (played + 1.5);
+		double s0 = expectedScore(elo0);
+		double s1 = expectedScore(elo1);
+		return played * (s1 - s0) * (2 * score - s0 - s1) / (2 * variance);
+	}
+
+	// returns the SPRT bound above which elo1 is accepted
+	private double upperBound() {
+		return Math.log((1 - beta) / alpha);
+	}
+
+	// returns the SPRT bound below which elo0 is accepted
+	private double lowerBound() {
+		return Math.log(beta / (1 - alpha));
+	}
+
+	// reads the evaluation weights named by a player's description (the defaults if it names no file)
+	private static Weights loadWeights(String description) throws IOException {
+		String[] parts = description.split(":");
+		return parts.length > 2 ? Weights.load(new File(parts[2])) : new Weights();
+	}
+
+	// creates a player from its description
+	private Player createPlayer(String description, Weights weights) {
+		String[] parts = description.split(":");
+		String setting = parts.length > 1 ? parts[1] : "";
+		switch (parts[0]) {
+		case "alphabeta":
+			return new AlphaBetaPlayer(description, setting, tablebase, weights);
+		case "mcts":
+			return new MonteCarloPlayer(description, setting.isEmpty() ? 100 : Long.parseLong(setting), tablebase);
+		case "random":
+			return new RandomPlayer();
+		default:
+			throw new IllegalArgumentException("unknown player " + description);
+		}
+	}
+
+	// the alpha-beta engine, searching for a fixed time or to a fixed depth
+	private static class AlphaBetaPlayer implements Player {
+
+		// hash size for each engine (every worker thread has its own)
+		private static final int HASH_SIZE = 16;
+
+		private final String name;
+		private final Engine engine = new Engine(new TranspositionTable(HASH_SIZE));
+		private final long time;
+		private final int depth;
+
+		AlphaBetaPlayer(String name, String setting, Tablebase tablebase, Weights weights) {
+			this.name = name;
+			if (setting.startsWith("d")) {
+				depth = Integer.parseInt(setting.substring(1));
+				time = 0;
+			} else {
+				depth = 0;
+				time = setting.isEmpty() ? 100 : Long.parseLong(setting);
+			}
+			engine.setTablebase(tablebase);
+			engine.setWeights(weights);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void newGame(long seed) {
+			// an empty table makes each game independent of the games before it
+			engine.getTable().clear();
+		}
+
+		@Override
+		public int chooseMove(Position position) {
+			Position copy = new Position(position);
+			return depth > 0 ? engine.searchDepth(copy, depth) : engine.search(copy, time);
+		}
+	}
+
+	// the Monte Carlo tree search
+	private static class MonteCarloPlayer implements Player {
+
+		// node pool for each search (every worker thread has its own)
+		private static final int NODES = 1 << 18;
+
+		private final String name;
+		private final MonteCarlo search = new MonteCarlo(NODES);
+		private final long time;
+
+		MonteCarloPlayer(String name, long time, Tablebase tablebase) {
+			this.name = name;
+			this.time = time;
+			search.setTablebase(tablebase);
+		}
+
+		@Override
+		public String getName() {
+			return name;
+		}
+
+		@Override
+		public void newGame(long seed) {
+			search.setSeed(seed);
+		}
+
+		@Override
+		public int chooseMove(Position position) {
+			return search.search(position, time);
+		}
+	}
+
+	// plays any legal move
+	private static class RandomPlayer implements Player {
+
+		private final int[] moves = new int[Move.MAX_MOVES];
+		private Random random = new Random();
+
+		@Override
+		public String getName() {
+			return "random";
+		}
+
+		@Override
+		public void newGame(long seed) {
+			random = new Random(seed);
+		}
+
+		@Override
+		public int chooseMove(Position position) {
+			int count = position.generateMoves(moves);
+			return count == 0 ? Move.NONE : moves[random.nextInt(count)];
+		}
+	}
+
+}
@@ -0,0 +1,168 @@
+package morris;
+
+import java.util.Arrays;
+
+// Fixed-size hash table of search results, keyed by position hash
+// Entries live in a primitive long[] as pairs (key ^ data, data):  a reader only accepts an entry whose two words
+// XOR back to its key, so an entry torn by a concurrent write is seen as a miss.  This lets many search threads
+// share one table without any locking.
+public class TranspositionTable {
+
+	// bound types:  how the stored score relates to the true score
+	public static final int EXACT = 0;
+	public static final int LOWER = 1;
+	public static final int UPPER = 2;
+
+	// layout of the data word
+	private static final int MOVE_BITS = 10;
+	private static final int SCORE_SHIFT = 10;
+	private static final int DEPTH_SHIFT = 26;
+	private static final int BOUND_SHIFT = 34;
+	private static final int GENERATION_SHIFT = 36;
+
+	// stored in place of Move.NONE
+	private static final int NO_MOVE = (1 << MOVE_BITS) - 1;
+
+	// number of entries sampled when reporting how full the table is
+	private static final int FILL_SAMPLE = 1000;
+
+	// the entries:  table[2 * i] = key ^ data, table[2 * i + 1] = data
+	private final long[] table;
+
+	// entry index mask (the number of entries is a power of two)
+	private final int mask;
+
+	// search generation, entries from older searches are replaced first
+	private volatile int generation;
+
+	// statistics (updated without synchronization, so approximate when shared between threads)
+	private long probes;
+	private long hits;
+	private long collisions;
+	private long stores;
+
+	// creates a table using at most the given number of megabytes
+	public TranspositionTable(int megabytes) {
+		long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+		int entries = Integer.highestOneBit((int) Math.min(bytes / 16, 1 << 29));
+		table = new long[entries * 2];
+		mask = entries - 1;
+	}
+
+	// starts a new search:  existing entries are kept but become replaceable
+	public void newSearch() {
+		generation = (generation + 1) & 0xff;
+	}
+
+	// clears every entry and the statistics
+	public void clear() {
+		Arrays.fill(table, 0);
+		probes = hits = collisions = stores = 0;
+	}
+
+	// returns the data word stored for key, or 0 if there is none (data words are never 0)
+	public long probe(long key) {
+		int i = ((int) key & mask) << 1;
+		long data = table[i + 1];
+		probes++;
+		if ((table[i] ^ data) == key && data != 0) {
+			hits++;
+			return data;
+		}
+		if (data != 0)
+			collisions++;
+		return 0;
+	}
+
+	// stores a search result for key, keeping the existing entry if it is deeper and from the current search
+	public void store(long key, int move, int score, int depth, int bound) {
+		int i = ((int) key & mask) << 1;
+		long old = table[i + 1];
+		boolean sameKey = (table[i] ^ old) == key;
+
+		if (old != 0 && !sameKey && generation(old) == generation && depth(old) > depth)
+			return;
+
+		// keep the old move if this result has none
+		if (move == Move.NONE && sameKey)
+			move = move(old);
+
+		long data = (move == Move.NONE ? NO_MOVE : move)
+				| (long) (score & 0xffff) << SCORE_SHIFT
+				| (long) (depth & 0xff) << DEPTH_SHIFT
+				| (long) bound << BOUND_SHIFT
+				| (long) (generation + 1) << GENERATION_SHIFT;
+
+		table[i] = key ^ data;
+		table[i + 1] = data;
+		stores++;
+	}
+
+	// decodes the move from a data word (Move.NONE if there is none)
+	public static int move(long data) {
+		int move = (int) data & NO_MOVE;
+		return move == NO_MOVE ? Move.NONE : move;
+	}
+
+	// decodes the score from a data word
+	public static int score(long data) {
+		return (short) (data >>> SCORE_SHIFT);
+	}
+
+	// decodes the search depth from a data word
+	public static int depth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & 0xff;
+	}
+
+	// decodes the bound type from a data word
+	public static int bound(long data) {
+		return (int) (data >>> BOUND_SHIFT) & 0x3;
+	}
+
+	// decodes the generation from a data word (stored plus one so that a used entry is never 0)
+	private static int generation(long data) {
+		return ((int) (data >>> GENERATION_SHIFT) - 1) & 0xff;
+	}
+
+	// returns the number of entries in the table
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	// returns the fraction of probes that found their position
+	public double getHitRate() {
+		return probes == 0 ? 0 : (double) hits / probes;
+	}
+
+	// returns the fraction of probes that found a different position in their slot
+	public double getCollisionRate() {
+		return probes == 0 ? 0 : (double) collisions / probes;
+	}
+
+	// returns the fraction of entries in use, estimated from a sample of the table
+	public double getFill() {
+		int sample = Math.min(FILL_SAMPLE, getCapacity());
+		int used = 0;
+		for (int i = 0; i < sample; i++)
+			if (table[2 * i + 1] != 0)
+				used++;
+		return (double) used / sample;
+	}
+
+	// returns the number of probes made
+	public long getProbes() {
+		return probes;
+	}
+
+	// returns the number of entries written
+	public long getStores() {
+		return stores;
+	}
+
+	// returns a one line summary of the table statistics
+	public String getReport() {
+		return String.format("hash %d entries  probes %d  hit rate %.1f%%  collision rate %.1f%%  fill %.1f%%",
+				getCapacity(), probes, 100 * getHitRate(), 100 * getCollisionRate(), 100 * getFill());
+	}
+
+}
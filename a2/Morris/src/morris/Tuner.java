@@ -0,0 +1,261 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+// Command line tool that tunes the evaluation Weights on positions recorded by Tournament (see TuningData)
+// Each position's evaluation is turned into an expected score by a logistic curve, and the weights are fitted to
+// minimise the mean squared difference from the results the positions' games actually had (Texel's method).  The
+// positions are first reduced to their feature differences, one byte each, in a mapped scratch file, so that each
+// pass over tens of millions of positions reads a few hundred megabytes of bytes and builds no positions.  Every
+// pass is split across all cores with fork-join.  The curve's scale is fitted first with the starting weights, then
+// the weights are fitted by gradient descent (Adam) and written as a parameter file.
+//
+// usage:  Tuner <data file> [iterations] [rate] [weights file]
+//		iterations defaults to 300, rate (the step size, in evaluation units) to 1 and the weights file to
+//		Weights.DEFAULT_FILE;  the tuning starts from the weights file if it exists, from the defaults otherwise
+public class Tuner {
+
+	// bytes per position in the scratch file:  the features, then the result
+	private static final int STRIDE = Weights.FEATURES + 1;
+
+	// positions handled by one fork-join task
+	private static final int LEAF = 1 << 16;
+
+	// Adam's decay rates
+	private static final double BETA1 = 0.9;
+	private static final double BETA2 = 0.999;
+
+	private final ForkJoinPool pool = new ForkJoinPool();
+
+	// the feature differences and results of every position
+	private final ByteBuffer features;
+	private final int count;
+
+	private Tuner(ByteBuffer features, int count) {
+		this.features = features;
+		this.count = count;
+	}
+
+	public static void main(String[] args) throws IOException {
+
+		if (args.length < 1) {
+			System.out.println("usage:  Tuner <data file> [iterations] [rate] [weights file]");
+			return;
+		}
+		File dataFile = new File(args[0]);
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 300;
+		double rate = args.length > 2 ? Double.parseDouble(args[2]) : 1;
+		File file = new File(args.length > 3 ? args[3] : Weights.DEFAULT_FILE);
+
+		Weights start = file.exists() ? Weights.load(file) : new Weights();
+		double[] weights = new double[Weights.FEATURES];
+		for (int i = 0; i < Weights.FEATURES; i++)
+			weights[i] = start.get(i);
+
+		long time = System.currentTimeMillis();
+		Tuner tuner = extract(dataFile);
+		System.out.println(tuner.count + " positions read in " + (System.currentTimeMillis() - time) + " ms on "
+				+ tuner.pool.getParallelism() + " threads");
+		if (tuner.count == 0)
+			return;
+
+		double scale = tuner.fitScale(weights);
+		System.out.println(String.format("scale %.5f  error %.6f  %s", scale, tuner.pass(weights, scale, null), start));
+
+		double error = tuner.fitWeights(weights, scale, iterations, rate);
+
+		int[] rounded = new int[Weights.FEATURES];
+		for (int i = 0; i < Weights.FEATURES; i++)
+			rounded[i] = (int) Math.round(weights[i]);
+		Weights tuned = new Weights(rounded);
+		tuned.save(file, String.format("tuned on %d positions of %s, error %.6f", tuner.count, dataFile.getName(), error));
+		System.out.println(tuned + " written to " + file + " in " + (System.currentTimeMillis() - time) + " ms");
+	}
+
+	// reduces the positions of a data file to their features in a scratch file, and returns a tuner for them
+	private static Tuner extract(File dataFile) throws IOException {
+		final ByteBuffer records = TuningData.open(dataFile);
+		int count = records.capacity() / TuningData.RECORD_SIZE;
+		if ((long) count * STRIDE > Integer.MAX_VALUE)
+			throw new IOException(dataFile + " has too many positions to tune on at once");
+
+		File scratch = File.createTempFile("tuner-", ".features");
+		scratch.deleteOnExit();
+		RandomAccessFile out = new RandomAccessFile(scratch, "rw");
+		final ByteBuffer features;
+		try {
+			// the mapping stays valid after the file is closed
+			features = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, (long) count * STRIDE);
+		} finally {
+			out.close();
+		}
+
+		Tuner tuner = new Tuner(features, count);
+		tuner.pool.invoke(tuner.new Extract(records, 0, count));
+		return tuner;
+	}
+
+	// returns the scale of the logistic curve that best fits the results with the given weights (a golden section
+	// search, as the error has a single minimum in the scale)
+	private double fitScale(double[] weights) {
+		double ratio = (Math.sqrt(5) - 1) / 2;
+		double low = 0;
+		double high = 0.1;
+		double a = high - ratio * (high - low);
+		double b = low + ratio * (high - low);
+		double errorA = pass(weights, a, null);
+		double errorB = pass(weights, b, null);
+		for (int i = 0; i < 40; i++) {
+			if (errorA < errorB) {
+				high = b;
+				b = a;
+				errorB = errorA;
+				a = high - ratio * (high - low);
+				errorA = pass(weights, a, null);
+			} else {
+				low = a;
+				a = b;
+				errorA = errorB;
+				b = low + ratio * (high - low);
+				errorB = pass(weights, b, null);
+			}
+		}
+		return (low + high) / 2;
+	}
+
+	// fits the weights by gradient descent and returns the final error
+	private double fitWeights(double[] weights, double scale, int iterations, double rate) {
+		double[] gradient = new double[Weights.FEATURES];
+		double[] mean = new double[Weights.FEATURES];
+		double[] variance = new double[Weights.FEATURES];
+		double error = 0;
+
+		for (int t = 1; t <= iterations; t++) {
+			error = pass(weights, scale, gradient);
+			for (int i = 0; i < Weights.FEATURES; i++) {
+				mean[i] = BETA1 * mean[i] + (1 - BETA1) * gradient[i];
+				variance[i] = BETA2 * variance[i] + (1 - BETA2) * gradient[i] * gradient[i];
+				double m = mean[i] / (1 - Math.pow(BETA1, t));
+				double v = variance[i] / (1 - Math.pow(BETA2, t));
+				weights[i] -= rate * m / (Math.sqrt(v) + 1e-12);
+			}
+			if (t % 25 == 0 || t == iterations)
+				System.out.println(String.format("iteration %4d  error %.6f", t, error));
+		}
+		return error;
+	}
+
+	// returns the mean squared error of the weights over every position, and puts its gradient in gradient (unless
+	// it is null)
+	private double pass(double[] weights, double scale, double[] gradient) {
+		double[] sums = pool.invoke(new Pass(weights, scale, gradient != null, 0, count));
+		if (gradient != null)
+			for (int i = 0; i < Weights.FEATURES; i++)
+				gradient[i] = sums[i] / count;
+		return sums[Weights.FEATURES] / count;
+	}
+
+	// works out the feature differences of a range of positions into the scratch file
+	private class Extract extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ByteBuffer records;
+		private final int from;
+		private final int to;
+
+		Extract(ByteBuffer records, int from, int to) {
+			this.records = records;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > LEAF) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new Extract(records, from, middle), new Extract(records, middle, to));
+				return;
+			}
+
+			// each task reads and writes through its own view of the buffers
+			ByteBuffer in = records.duplicate();
+			ByteBuffer out = features.duplicate();
+			Position position = new Position();
+			for (int i = from; i < to; i++) {
+				TuningData.decode(in, i, position);
+				int side = position.getTurn();
+				int other = Position.opponent(side);
+				for (int f = 0; f < Weights.FEATURES; f++)
+					out.put(i * STRIDE + f, (byte) (Weights.feature(position, side, f) - Weights.feature(position, other, f)));
+				out.put(i * STRIDE + Weights.FEATURES, (byte) TuningData.result(in, i));
+			}
+		}
+	}
+
+	// sums the squared error of a range of positions and, if asked, its gradient:  { gradient..., error }
+	private class Pass extends RecursiveTask<double[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] weights;
+		private final double scale;
+		private final boolean gradient;
+		private final int from;
+		private final int to;
+
+		Pass(double[] weights, double scale, boolean gradient, int from, int to) {
+			this.weights = weights;
+			this.scale = scale;
+			this.gradient = gradient;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected double[] compute() {
+			if (to - from > LEAF) {
+				int middle = (from + to) >>> 1;
+				Pass left = new Pass(weights, scale, gradient, from, middle);
+				left.fork();
+				double[] sums = new Pass(weights, scale, gradient, middle, to).compute();
+				double[] leftSums = left.join();
+				for (int i = 0; i < sums.length; i++)
+					sums[i] += leftSums[i];
+				return sums;
+			}
+
+			ByteBuffer in = features.duplicate();
+			int[] x = new int[Weights.FEATURES];
+			double[] sums = new double[Weights.FEATURES + 1];
+			for (int i = from; i < to; i++) {
+				int offset = i * STRIDE;
+				double evaluation = 0;
+				for (int f = 0; f < Weights.FEATURES; f++) {
+					x[f] = in.get(offset + f);
+					evaluation += weights[f] * x[f];
+				}
+				double result = in.get(offset + Weights.FEATURES) / 2.0;
+
+				// expected score 1 / (1 + 10^(-scale * evaluation)), and the error's derivative through it
+				double expected = 1 / (1 + Math.pow(10, -scale * evaluation));
+				double difference = expected - result;
+				sums[Weights.FEATURES] += difference * difference;
+				if (gradient) {
+					double slope = 2 * difference * expected * (1 - expected) * scale * Math.log(10);
+					for (int f = 0; f < Weights.FEATURES; f++)
+						sums[f] += slope * x[f];
+				}
+			}
+			return sums;
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package morris;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Positions from finished games with the result each game had for the side to move, for the Tuner
+// Tournament records every quiet position it plays (see its -record option) and games are added whole, so a file
+// can grow to tens of millions of positions:  records are written in large batches, and read back by mapping the
+// file rather than building a Position or GameModel for each of them at once.
+// File layout (big-endian):  magic "MORRISTD", version, then the records:  blue's and red's pieces (masks), the
+// pieces each side has to place (blue's in the high four bits), and the side to move with the result shifted left
+// by one.
+public class TuningData {
+
+	// file header (the magic number spells "MORRISTD")
+	private static final long MAGIC = 0x4d4f525249535444L;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 12;
+
+	// size of a record
+	public static final int RECORD_SIZE = 6;
+
+	// results, for the side to move
+	public static final int LOSS = 0;
+	public static final int DRAW = 1;
+	public static final int WIN = 2;
+
+	// number of records written at once
+	private static final int BATCH = 1 << 14;
+
+	private final RandomAccessFile out;
+	private final FileChannel channel;
+
+	// records not written yet
+	private final ByteBuffer pending = ByteBuffer.allocate(BATCH * RECORD_SIZE);
+
+	private TuningData(RandomAccessFile out) throws IOException {
+		this.out = out;
+		channel = out.getChannel();
+	}
+
+	// starts a new file, or adds to the end of an existing one
+	public static TuningData create(File file) throws IOException {
+		boolean exists = file.exists() && file.length() > 0;
+		if (exists)
+			open(file);
+
+		TuningData data = new TuningData(new RandomAccessFile(file, "rw"));
+		if (exists) {
+			// a record cut short by a crash is dropped
+			data.channel.truncate(HEADER_SIZE + count(file) * RECORD_SIZE);
+			data.channel.position(data.channel.size());
+		} else {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+			header.putLong(MAGIC).putInt(VERSION);
+			header.flip();
+			data.write(header);
+		}
+		return data;
+	}
+
+	// maps the records of a file into memory (a file may hold up to Integer.MAX_VALUE bytes of records)
+	public static MappedByteBuffer open(File file) throws IOException {
+		RandomAccessFile in = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = in.getChannel();
+			if (channel.size() < HEADER_SIZE)
+				throw new IOException(file + " is not a tuning data file");
+			ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+			if (header.getLong() != MAGIC)
+				throw new IOException(file + " is not a tuning data file");
+			int version = header.getInt();
+			if (version != VERSION)
+				throw new IOException(file + " has tuning data version " + version + ", expected " + VERSION);
+			long size = count(file) * RECORD_SIZE;
+			if (size > Integer.MAX_VALUE)
+				throw new IOException(file + " is too large to map");
+
+			// the mapping stays valid after the file is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, size);
+		} finally {
+			in.close();
+		}
+	}
+
+	// returns the number of whole records in a file
+	private static long count(File file) {
+		return Math.max(0, file.length() - HEADER_SIZE) / RECORD_SIZE;
+	}
+
+	// returns position packed in the record layout, without the result (see addGame)
+	public static long encode(Position position) {
+		return (long) position.getPieces(Position.BLUE) << 32 | (long) position.getPieces(Position.RED) << 16
+				| position.getToPlace(Position.BLUE) << 12 | position.getToPlace(Position.RED) << 8 | position.getTurn();
+	}
+
+	// adds the positions (packed by encode) of a game that winner won (Position.NONE for a draw)
+	public synchronized void addGame(long[] positions, int count, int winner) throws IOException {
+		for (int i = 0; i < count; i++) {
+			int turn = (int) positions[i] & 1;
+			int result = winner == Position.NONE ? DRAW : winner == turn ? WIN : LOSS;
+			pending.putShort((short) (positions[i] >>> 32)).putShort((short) (positions[i] >>> 16));
+			pending.put((byte) (positions[i] >>> 8)).put((byte) (turn | result << 1));
+			if (!pending.hasRemaining())
+				flush();
+		}
+	}
+
+	// writes the records not written yet and closes the file
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	// writes the records not written yet
+	private void flush() throws IOException {
+		pending.flip();
+		write(pending);
+		pending.clear();
+	}
+
+	// writes all of buffer (from its position) to the file
+	private void write(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+	}
+
+	// sets position to record i of records (as mapped by open)
+	public static void decode(ByteBuffer records, int i, Position position) {
+		int offset = i * RECORD_SIZE;
+		int blue = records.getShort(offset) & 0xffff;
+		int red = records.getShort(offset + 2) & 0xffff;
+		int toPlace = records.get(offset + 4);
+		for (int p = 0; p < Topology.POINTS; p++) {
+			position.clear(p);
+			if ((blue & 1 << p) != 0)
+				position.set(p, Position.BLUE);
+			else if ((red & 1 << p) != 0)
+				position.set(p, Position.RED);
+		}
+		position.setToPlace(Position.BLUE, toPlace >>> 4 & 0xf);
+		position.setToPlace(Position.RED, toPlace & 0xf);
+		position.setTurn(records.get(offset + 5) & 1);
+		position.setDeletionRequired(false);
+		position.setWinner(Position.NONE);
+	}
+
+	// returns the result of record i of records for the side to move
+	public static int result(ByteBuffer records, int i) {
+		return records.get(i * RECORD_SIZE + 5) >>> 1;
+	}
+
+}
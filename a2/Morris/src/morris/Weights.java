@@ -0,0 +1,141 @@
+package morris;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+// Weights of the features of the static evaluation used by the Engine
+// Each feature is counted for both sides by Position as pieces are added and removed, so evaluating a position is
+// a handful of multiplications.  The weights can be read from a parameter file of "name = value" lines (see
+// java.util.Properties), such as the one written by the Tuner;  a feature the file leaves out keeps its default.
+public class Weights {
+
+	// file the game looks for (in the working directory)
+	public static final String DEFAULT_FILE = "morris.weights";
+
+	// the features:  pieces on the board, pieces left to place, moves available, complete mills, open twos, points
+	// completing two mills at once, and pieces that cannot move
+	public static final int PIECES = 0;
+	public static final int TO_PLACE = 1;
+	public static final int MOBILITY = 2;
+	public static final int MILLS = 3;
+	public static final int OPEN_TWOS = 4;
+	public static final int DOUBLE_SETUPS = 5;
+	public static final int BLOCKED = 6;
+	public static final int FEATURES = 7;
+
+	// names of the features in a parameter file
+	private static final String[] NAMES = { "pieces", "toPlace", "mobility", "mills", "openTwos", "doubleSetups", "blocked" };
+
+	// weights used when there is no parameter file
+	private static final int[] DEFAULTS = { 100, 100, 5, 10, 8, 20, -4 };
+
+	private final int[] weights;
+
+	// creates the default weights
+	public Weights() {
+		weights = DEFAULTS.clone();
+	}
+
+	// creates weights with the given values, indexed by feature
+	public Weights(int[] weights) {
+		if (weights.length != FEATURES)
+			throw new IllegalArgumentException("expected " + FEATURES + " weights, got " + weights.length);
+		this.weights = weights.clone();
+	}
+
+	// reads weights from a parameter file
+	public static Weights load(File file) throws IOException {
+		Properties properties = new Properties();
+		InputStream in = new FileInputStream(file);
+		try {
+			properties.load(in);
+		} finally {
+			in.close();
+		}
+
+		int[] weights = DEFAULTS.clone();
+		for (int i = 0; i < FEATURES; i++) {
+			String value = properties.getProperty(NAMES[i]);
+			if (value == null)
+				continue;
+			try {
+				weights[i] = Integer.parseInt(value.trim());
+			} catch (NumberFormatException e) {
+				throw new IOException(file + ":  " + NAMES[i] + " is not a whole number:  " + value);
+			}
+		}
+		return new Weights(weights);
+	}
+
+	// writes the weights as a parameter file
+	public void save(File file, String comment) throws IOException {
+		Properties properties = new Properties();
+		for (int i = 0; i < FEATURES; i++)
+			properties.setProperty(NAMES[i], Integer.toString(weights[i]));
+
+		OutputStream out = new FileOutputStream(file);
+		try {
+			properties.store(out, comment);
+		} finally {
+			out.close();
+		}
+	}
+
+	// returns the weight of a feature
+	public int get(int feature) {
+		return weights[feature];
+	}
+
+	// returns the name of a feature in a parameter file
+	public static String getName(int feature) {
+		return NAMES[feature];
+	}
+
+	// returns the value of a feature for side in position
+	public static int feature(Position position, int side, int feature) {
+		switch (feature) {
+		case PIECES:
+			return Integer.bitCount(position.getPieces(side));
+		case TO_PLACE:
+			return position.getToPlace(side);
+		case MOBILITY:
+			return position.countMoves(side);
+		case MILLS:
+			return position.getMillCount(side);
+		case OPEN_TWOS:
+			return position.getOpenTwos(side);
+		case DOUBLE_SETUPS:
+			return position.getDoubleSetups(side);
+		default:
+			return position.getBlocked(side);
+		}
+	}
+
+	// returns the static evaluation of position for the side to move:  the weighted difference of the features
+	public int evaluate(Position position) {
+		int side = position.getTurn();
+		int other = Position.opponent(side);
+		return weights[PIECES] * (Integer.bitCount(position.getPieces(side)) - Integer.bitCount(position.getPieces(other)))
+				+ weights[TO_PLACE] * (position.getToPlace(side) - position.getToPlace(other))
+				+ weights[MOBILITY] * (position.countMoves(side) - position.countMoves(other))
+				+ weights[MILLS] * (position.getMillCount(side) - position.getMillCount(other))
+				+ weights[OPEN_TWOS] * (position.getOpenTwos(side) - position.getOpenTwos(other))
+				+ weights[DOUBLE_SETUPS] * (position.getDoubleSetups(side) - position.getDoubleSetups(other))
+				+ weights[BLOCKED] * (position.getBlocked(side) - position.getBlocked(other));
+	}
+
+	// returns the weights as a parameter file would list them
+	@Override
+	public String toString() {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < FEATURES; i++)
+			text.append(i == 0 ? "" : "  ").append(NAMES[i]).append(' ').append(weights[i]);
+		return text.toString();
+	}
+
+}
@@ -0,0 +1,62 @@
+package morris;
+
+import java.util.Random;
+
+// Random keys used to hash positions:  a position's hash is the XOR of the keys of everything in it
+// The keys come from a fixed seed so hashes are the same from run to run (and can be stored in files)
+public final class Zobrist {
+
+	// seed for the key generator -- changing it invalidates every stored hash
+	private static final long SEED = 0x6d6f727269734c31L;
+
+	// keys for a piece of each side on each point
+	private static final long[][] PIECES = new long[2][Topology.POINTS];
+
+	// keys for the number of pieces each side has left to place
+	private static final long[][] TO_PLACE = new long[2][Position.PIECE_COUNT + 1];
+
+	// key XORed in when red is to move
+	private static final long TURN;
+
+	// key XORed in when a deletion is required
+	private static final long DELETION;
+
+	static {
+		Random rand = new Random(SEED);
+
+		for (int side = 0; side < 2; side++)
+			for (int p = 0; p < Topology.POINTS; p++)
+				PIECES[side][p] = rand.nextLong();
+
+		for (int side = 0; side < 2; side++)
+			for (int n = 0; n <= Position.PIECE_COUNT; n++)
+				TO_PLACE[side][n] = rand.nextLong();
+
+		TURN = rand.nextLong();
+		DELETION = rand.nextLong();
+	}
+
+	private Zobrist() {
+	}
+
+	// returns the key for a piece of side on point p
+	public static long piece(int side, int p) {
+		return PIECES[side][p];
+	}
+
+	// returns the key for side having count pieces left to place
+	public static long toPlace(int side, int count) {
+		return TO_PLACE[side][count];
+	}
+
+	// returns the key for red to move
+	public static long turn() {
+		return TURN;
+	}
+
+	// returns the key for a required deletion
+	public static long deletion() {
+		return DELETION;
+	}
+
+}